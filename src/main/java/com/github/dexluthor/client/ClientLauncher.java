@@ -1,5 +1,6 @@
 package com.github.dexluthor.client;
 
+import com.github.dexluthor.profile.TransferRecorder;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -20,4 +21,9 @@ public class ClientLauncher extends Application {
         primaryStage.setResizable(false);
         primaryStage.show();
     }
+
+    @Override
+    public void stop() {
+        TransferRecorder.dump("client");
+    }
 }
\ No newline at end of file
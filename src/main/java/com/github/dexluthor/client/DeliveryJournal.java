@@ -0,0 +1,77 @@
+package com.github.dexluthor.client;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// Append-only record of files the client has started and verified, kept next to the destination.
+// Resume reads it instead of crawling the destination tree.
+@Slf4j
+public class DeliveryJournal implements Closeable {
+    // 'B' records of older journals had no offset, reading such a journal stops at the first one
+    private static final byte BEGUN = 'S';
+    private static final byte DELIVERED = 'D';
+
+    private final DataOutputStream out;
+
+    public DeliveryJournal(File journalFile) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+    }
+
+    // file is going to be rewritten from offset, bytes after it are not verified anymore
+    public synchronized void begun(String relativePath, long offset) throws IOException {
+        out.writeByte(BEGUN);
+        out.writeUTF(relativePath);
+        out.writeLong(offset);
+    }
+
+    public synchronized void delivered(String relativePath, long length) throws IOException {
+        out.writeByte(DELIVERED);
+        out.writeUTF(relativePath);
+        out.writeLong(length);
+    }
+
+    // called before acknowledging, so nothing acknowledged is missing in the journal
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    // path relative to the destination -> delivered bytes, in the form the server expects. Only acknowledged bytes
+    // count: a file which was begun but not delivered since resumes from the offset it was begun at, so bytes that
+    // never passed the checksum are sent again. Journaled files are stat'ed in parallel instead of listing
+    // the destination, files deleted since then are left out.
+    public static Map<String, Long> read(File journalFile, File destination) throws IOException {
+        final Map<String, Long> verified = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                final byte type = in.readByte();
+                if (type != BEGUN && type != DELIVERED) {
+                    log.warn("Journal {} is corrupted, using what was read so far", journalFile);
+                    break;
+                }
+                final String path = in.readUTF();
+                final long length = in.readLong();
+                if (type == DELIVERED) {
+                    verified.put(path, length);
+                } else {
+                    verified.merge(path, length, Math::min);
+                }
+            }
+        } catch (EOFException e) {
+            // end of journal or record torn by a crash
+        }
+        return verified.entrySet().parallelStream()
+                .filter(entry -> new File(destination, entry.getKey()).isFile())
+                // shorter file was cut since, its prefix is still verified
+                .collect(Collectors.toMap(Map.Entry::getKey,
+                        entry -> Math.min(entry.getValue(), new File(destination, entry.getKey()).length())));
+    }
+}
@@ -0,0 +1,112 @@
+package com.github.dexluthor.client;
+
+import com.github.dexluthor.utils.FileCrawler;
+import com.github.dexluthor.utils.FileDeleter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.github.dexluthor.utils.Utils.relativePath;
+
+// Inventory and cleanup of the destination directory off the calling thread, so neither
+// the UI nor the start of the transfer waits for crawling or deleting a large tree.
+@Slf4j
+public class DestinationService {
+    private static final String TRASH_SUFFIX = ".trash-";
+    private static final String JOURNAL_SUFFIX = ".journal";
+
+    private final File destination;
+    private final File journalFile;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DestinationService(File destination) {
+        this.destination = destination.getAbsoluteFile();
+        this.journalFile = new File(this.destination.getParentFile(), this.destination.getName() + JOURNAL_SUFFIX);
+    }
+
+    public boolean hasContent() {
+        final String[] content = destination.list();
+        return content != null && content.length > 0;
+    }
+
+    // Relative path -> delivered bytes. Read from the delivery journal when there is one,
+    // the destination is crawled only if it is missing
+    public CompletableFuture<Map<String, Long>> inventory() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (journalFile.exists()) {
+                    final Map<String, Long> pathDeliveredBytes = DeliveryJournal.read(journalFile, destination);
+                    log.debug("Destination inventory from journal: {} files", pathDeliveredBytes.size());
+                    return pathDeliveredBytes;
+                }
+                final HashMap<String, Long> pathDeliveredBytes = new HashMap<>();
+                if (destination.exists()) {
+                    try (DeliveryJournal journal = openJournal()) {
+                        for (File file : FileCrawler.crawl(destination)) {
+                            final String path = relativePath(file.getAbsolutePath(), destination.getAbsolutePath());
+                            pathDeliveredBytes.put(path, file.length());
+                            journal.delivered(path, file.length());
+                        }
+                    }
+                }
+                log.debug("Destination inventory from crawling: {} files", pathDeliveredBytes.size());
+                return pathDeliveredBytes;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    public DeliveryJournal openJournal() throws IOException {
+        return new DeliveryJournal(journalFile);
+    }
+
+    // Moves the old content aside in one rename and deletes it in background. Destination is empty
+    // when this returns, only if the rename is not possible the content is deleted in place first.
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    public CompletableFuture<Void> purge() {
+        journalFile.delete();
+        if (!hasContent()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final File trash = new File(destination.getParentFile(), destination.getName() + TRASH_SUFFIX + System.currentTimeMillis());
+        if (destination.renameTo(trash) && destination.mkdirs()) {
+            log.info("Moved old content of {} to {}", destination, trash);
+            return deleteAsync(trash);
+        }
+        log.warn("Could not move {} aside, deleting its content in place", destination);
+        FileDeleter.deleteContent(destination);
+        destination.mkdirs();
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // trash left behind when the client was closed during background deletion
+    public void sweepTrash() {
+        final File[] leftovers = destination.getParentFile()
+                .listFiles((dir, name) -> name.startsWith(destination.getName() + TRASH_SUFFIX));
+        if (leftovers != null) {
+            for (final File leftover : leftovers) {
+                deleteAsync(leftover);
+            }
+        }
+    }
+
+    private CompletableFuture<Void> deleteAsync(File file) {
+        return CompletableFuture.runAsync(() -> {
+            final long started = System.nanoTime();
+            FileDeleter.delete(file);
+            log.info("Deleted {} in {} ms", file, (System.nanoTime() - started) / 1_000_000);
+        }, executor);
+    }
+}
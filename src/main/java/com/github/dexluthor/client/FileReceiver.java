@@ -0,0 +1,197 @@
+package com.github.dexluthor.client;
+
+import com.github.dexluthor.profile.EventType;
+import com.github.dexluthor.profile.TransferRecorder;
+import com.github.dexluthor.protocol.AckStatus;
+import com.github.dexluthor.protocol.FrameReader;
+import com.github.dexluthor.protocol.FrameType;
+import com.github.dexluthor.protocol.FrameWriter;
+import com.github.dexluthor.protocol.Handshake;
+import com.github.dexluthor.protocol.ProtocolException;
+import com.github.dexluthor.utils.ApplicationProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32;
+
+// Saves files coming through one data socket until the server sends END frame.
+// Shared by the JavaFX client and the headless one, progress is reported through callbacks.
+@Slf4j
+public class FileReceiver {
+    private final Socket socket;
+    private final Handshake.Session session;
+    private final File destination;
+    private final DeliveryJournal journal;
+    private final LongConsumer onBytes;
+    private final Runnable onFile;
+    private final ApplicationProperties props = ApplicationProperties.INSTANCE;
+
+    private FrameReader in;
+    private FrameWriter out;
+    private int batchRemaining;
+    private byte[] zeros;
+    private long checksumNanos;
+
+    public FileReceiver(Socket socket, Handshake.Session session, File destination, DeliveryJournal journal, LongConsumer onBytes, Runnable onFile) {
+        this.socket = socket;
+        this.session = session;
+        this.destination = destination;
+        this.journal = journal;
+        this.onBytes = onBytes;
+        this.onFile = onFile;
+    }
+
+    public void receive() throws IOException {
+        final long started = System.nanoTime();
+        in = new FrameReader(new BufferedInputStream(socket.getInputStream(), props.getChunkSize()));
+        out = new FrameWriter(new BufferedOutputStream(socket.getOutputStream()));
+        while (true) {
+            final FrameType type = in.next();
+            switch (type) {
+                case BATCH:
+                    batchRemaining = in.readBatch();
+                    break;
+                case FILE_BEGIN:
+                    receiveFile(in.readFileBegin());
+                    break;
+                case END:
+                    in.readEnd();
+                    final long elapsed = System.nanoTime() - started;
+                    log.debug("Got end of transfer, checksum took {}% of {} ms on this socket",
+                            String.format("%.2f", 100.0 * checksumNanos / elapsed), elapsed / 1_000_000);
+                    socket.shutdownOutput();
+                    return;
+                case ERROR:
+                    throw new ProtocolException("Server failed: " + in.readError());
+                default:
+                    out.writeError("Unexpected " + type + " frame");
+                    out.flush();
+                    throw new ProtocolException("Unexpected " + type + " frame");
+            }
+        }
+    }
+
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private void receiveFile(final FrameReader.FileBegin begin) throws IOException {
+        final long started = TransferRecorder.start();
+        final File file = resolve(begin.getPath());
+        file.getParentFile().mkdirs();
+        if (!file.exists()) {
+            // hint for filesystems which need files marked sparse up front (NTFS), others make holes anyway
+            Files.newByteChannel(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.SPARSE).close();
+        }
+        journal.begun(begin.getPath(), begin.getOffset());
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < begin.getOffset()) {
+                out.writeError("Cannot resume " + begin.getPath() + " at " + begin.getOffset() + ", only " + raf.length() + " bytes present");
+                out.flush();
+                throw new ProtocolException("Resume offset beyond end of " + file);
+            }
+            raf.setLength(begin.getOffset());
+            raf.seek(begin.getOffset());
+
+            final byte[] buffer = new byte[props.getChunkSize()];
+            final CRC32 crc = new CRC32();
+            long totallyReadBytes = begin.getOffset();
+            FrameType type;
+            while ((type = in.next()) == FrameType.DATA || type == FrameType.HOLE) {
+                if (type == FrameType.HOLE) {
+                    // skipped, not written - the filesystem keeps the region unallocated
+                    final long hole = in.readHole();
+                    updateWithZeros(crc, hole);
+                    totallyReadBytes += hole;
+                    raf.seek(totallyReadBytes);
+                    onBytes.accept(hole);
+                    continue;
+                }
+                final long readStarted = TransferRecorder.start();
+                final int read = in.readData(buffer);
+                TransferRecorder.record(EventType.SOCKET_READ, readStarted, read);
+                totallyReadBytes += read;
+                final long checksumStarted = System.nanoTime();
+                crc.update(buffer, 0, read);
+                checksumNanos += System.nanoTime() - checksumStarted;
+                final long writeStarted = TransferRecorder.start();
+                raf.write(buffer, 0, read);
+                TransferRecorder.record(EventType.DISK_WRITE, writeStarted, read);
+                log.trace("Got chunk of {}. Left {} MB", begin.getPath(), (begin.getLength() - totallyReadBytes) / (1024 * 1024));
+                onBytes.accept(read);
+            }
+            if (type != FrameType.FILE_END) {
+                throw new ProtocolException("Expected DATA, HOLE or FILE_END frame, got " + type);
+            }
+            if (raf.length() < totallyReadBytes) {
+                // hole at the end of the file
+                raf.setLength(totallyReadBytes);
+            }
+            final FrameReader.FileEnd end = in.readFileEnd();
+            if (end.getFileId() != begin.getFileId()) {
+                throw new ProtocolException("FILE_END of " + end.getFileId() + " inside file " + begin.getFileId());
+            }
+
+            final boolean lastOfBatch = batchRemaining > 0 && --batchRemaining == 0;
+            if (totallyReadBytes == begin.getLength() && end.getChecksum() == crc.getValue()) {
+                if (session.has(Handshake.CAP_DURABLE_ACKS)) {
+                    final long syncStarted = TransferRecorder.start();
+                    raf.getFD().sync();
+                    TransferRecorder.record(EventType.DISK_SYNC, syncStarted, begin.getLength());
+                }
+                journal.delivered(begin.getPath(), begin.getLength());
+                TransferRecorder.record(EventType.FILE_RECEIVED, started, begin.getLength());
+                onFile.run();
+                log.info("Saved {}", begin.getPath());
+                // files of a batch are acknowledged together by the last one
+                if (batchRemaining == 0) {
+                    acknowledge(begin.getFileId(), AckStatus.OK);
+                }
+            } else {
+                // drop what came in this attempt, the server sends it again from the same offset
+                raf.setLength(begin.getOffset());
+                onBytes.accept(begin.getOffset() - totallyReadBytes);
+                log.warn("Checksum mismatch of {}, requested retransmission", begin.getPath());
+                acknowledge(begin.getFileId(), AckStatus.CORRUPT);
+                if (lastOfBatch) {
+                    // the rest of the batch still needs its acknowledgement
+                    acknowledge(begin.getFileId() - 1, AckStatus.OK);
+                }
+            }
+        }
+    }
+
+    // the path comes from the server, it must not lead out of the destination (e.g. through "..")
+    private File resolve(final String path) throws IOException {
+        final Path root = destination.toPath().toAbsolutePath().normalize();
+        final Path resolved = new File(root.toFile(), path).toPath().normalize();
+        if (resolved.equals(root) || !resolved.startsWith(root)) {
+            out.writeError("Path " + path + " is outside of the destination");
+            out.flush();
+            throw new ProtocolException("Path " + path + " is outside of " + root);
+        }
+        return resolved.toFile();
+    }
+
+    private void updateWithZeros(final CRC32 crc, long length) {
+        if (zeros == null) {
+            zeros = new byte[props.getChunkSize()];
+        }
+        final long checksumStarted = System.nanoTime();
+        while (length > 0) {
+            final int part = (int) Math.min(zeros.length, length);
+            crc.update(zeros, 0, part);
+            length -= part;
+        }
+        checksumNanos += System.nanoTime() - checksumStarted;
+    }
+
+    private void acknowledge(final long fileId, final AckStatus status) throws IOException {
+        journal.flush();
+        out.writeAck(fileId, status);
+        out.flush();
+    }
+}
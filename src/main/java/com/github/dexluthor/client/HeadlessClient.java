@@ -0,0 +1,114 @@
+package com.github.dexluthor.client;
+
+import com.github.dexluthor.profile.EventType;
+import com.github.dexluthor.profile.TransferRecorder;
+import com.github.dexluthor.protocol.Handshake;
+import com.github.dexluthor.utils.ApplicationProperties;
+import com.github.dexluthor.utils.Pair;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Client without GUI, pulls the source tree from all configured replicas at once.
+// Usage: HeadlessClient [socketsPerServer] [start|continue]
+@Slf4j
+public class HeadlessClient {
+    private final ApplicationProperties props = ApplicationProperties.INSTANCE;
+    private final List<Pair<String, Integer>> servers;
+    private final int socketsPerServer;
+    private final boolean resume;
+    private final AtomicLong receivedBytes = new AtomicLong();
+    private final AtomicInteger receivedFiles = new AtomicInteger();
+
+    public HeadlessClient(List<Pair<String, Integer>> servers, int socketsPerServer, boolean resume) {
+        this.servers = servers;
+        this.socketsPerServer = socketsPerServer;
+        this.resume = resume;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int sockets = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        final boolean resume = args.length < 2 || "continue".equalsIgnoreCase(args[1]);
+        final boolean finished = new HeadlessClient(ApplicationProperties.INSTANCE.getServerAddresses(), sockets, resume)
+                .download();
+        TransferRecorder.dump("client");
+        System.exit(finished ? 0 : 1);
+    }
+
+    public boolean download() throws IOException, InterruptedException {
+        props.setNumberOfSockets(socketsPerServer);
+        final DestinationService destination = new DestinationService(new File(props.getDestinationDir()));
+        destination.sweepTrash();
+        final Map<String, Long> deliveredFiles;
+        if (resume) {
+            deliveredFiles = destination.inventory().join();
+        } else {
+            // old content is deleted in background while the transfer already runs
+            destination.purge();
+            deliveredFiles = null;
+        }
+
+        final List<Socket> managingSockets = new ArrayList<>();
+        final List<Handshake.Session> sessions = new ArrayList<>();
+        TransferMeta total = TransferMeta.EMPTY;
+        for (int i = 0; i < servers.size(); i++) {
+            final Socket managingSocket = new Socket(servers.get(i).getKey(), servers.get(i).getValue());
+            managingSockets.add(managingSocket);
+            sessions.add(TransferMeta.negotiate(managingSocket));
+            final TransferMeta meta = TransferMeta.exchange(managingSocket, socketsPerServer, i, servers.size(), deliveredFiles);
+            log.info("Replica {}:{} {}", servers.get(i).getKey(), servers.get(i).getValue(), meta);
+            total = total.plus(meta);
+        }
+        receivedFiles.set(total.getDeliveredFileCount());
+        receivedBytes.set(total.getDeliveredBytes());
+
+        TransferRecorder.mark(EventType.REPLICAS, servers.size());
+        TransferRecorder.mark(EventType.SESSION, socketsPerServer);
+        final int numberOfSockets = servers.size() * socketsPerServer;
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfSockets);
+        final CountDownLatch countDownLatch = new CountDownLatch(numberOfSockets);
+        final AtomicBoolean failed = new AtomicBoolean();
+        final long started = System.nanoTime();
+        final DeliveryJournal journal = destination.openJournal();
+        for (int index = 0; index < servers.size(); index++) {
+            final Pair<String, Integer> server = servers.get(index);
+            final Handshake.Session session = sessions.get(index);
+            for (int i = 0; i < socketsPerServer; i++) {
+                final Socket socket = new Socket(server.getKey(), server.getValue());
+                executor.execute(() -> {
+                    try (Socket s = socket) {
+                        new FileReceiver(s, session, new File(props.getDestinationDir()), journal,
+                                receivedBytes::addAndGet, receivedFiles::incrementAndGet).receive();
+                    } catch (IOException e) {
+                        log.warn("Data socket to {}:{} failed", server.getKey(), server.getValue(), e);
+                        failed.set(true);
+                    } finally {
+                        countDownLatch.countDown();
+                    }
+                });
+            }
+        }
+        countDownLatch.await();
+        executor.shutdown();
+        journal.close();
+        for (final Socket managingSocket : managingSockets) {
+            managingSocket.close();
+        }
+
+        final double seconds = (System.nanoTime() - started) / 1e9;
+        log.info("Received {}/{} files, {}/{} MB in {} s", receivedFiles.get(), total.getTotalFileCount(),
+                receivedBytes.get() / (1024 * 1024), total.getTotalBytes() / (1024 * 1024), String.format("%.1f", seconds));
+        return !failed.get() && receivedFiles.get() == total.getTotalFileCount();
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.dexluthor.client;
+
+import com.github.dexluthor.protocol.Handshake;
+import com.github.dexluthor.utils.ApplicationProperties;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.net.Socket;
+import java.util.Map;
+
+@AllArgsConstructor
+@Getter
+@ToString
+@Slf4j
+public class TransferMeta {
+    private final int totalFileCount;
+    private final long deliveredBytes;
+    private final int deliveredFileCount;
+    private final long totalBytes;
+
+    public static final TransferMeta EMPTY = new TransferMeta(0, 0, 0, 0);
+
+    public TransferMeta plus(TransferMeta other) {
+        return new TransferMeta(totalFileCount + other.totalFileCount, deliveredBytes + other.deliveredBytes,
+                deliveredFileCount + other.deliveredFileCount, totalBytes + other.totalBytes);
+    }
+
+    // First exchange on the managing socket, data sockets to the same replica follow what was agreed here
+    public static Handshake.Session negotiate(Socket managingSocket) throws IOException {
+        final ApplicationProperties props = ApplicationProperties.INSTANCE;
+        final int capabilities = Handshake.CAP_BATCH
+                | (props.isDurableAcks() ? Handshake.CAP_DURABLE_ACKS : 0)
+                | (props.isSparse() ? Handshake.CAP_SPARSE : 0);
+        Handshake.offer(new DataOutputStream(managingSocket.getOutputStream()), capabilities, props.getAckWindow());
+        final Handshake.Session session = Handshake.await(new DataInputStream(managingSocket.getInputStream()));
+        log.debug("Negotiated {}", session);
+        return session;
+    }
+
+    // Transfer setup with one replica after negotiate(). deliveredFiles maps paths relative to the destination
+    // to delivered bytes, null means start from the beginning.
+    public static TransferMeta exchange(Socket managingSocket, int numberOfSockets, int replicaIndex, int replicaCount,
+                                        Map<String, Long> deliveredFiles) throws IOException {
+        final DataOutputStream outputStream = new DataOutputStream(managingSocket.getOutputStream());
+        final DataInputStream inputStream = new DataInputStream(managingSocket.getInputStream());
+
+        outputStream.writeInt(numberOfSockets);
+        outputStream.writeInt(replicaIndex);
+        outputStream.writeInt(replicaCount);
+        if (deliveredFiles != null) {
+            outputStream.writeUTF("continue");
+            new ObjectOutputStream(managingSocket.getOutputStream()).writeObject(deliveredFiles);
+        } else {
+            outputStream.writeUTF("start");
+        }
+        final int totalFileCount = inputStream.readInt();
+        final long deliveredBytes = inputStream.readLong();
+        final int deliveredFileCount = inputStream.readInt();
+        final long totalBytes = inputStream.readLong();
+        return new TransferMeta(totalFileCount, deliveredBytes, deliveredFileCount, totalBytes);
+    }
+}
@@ -1,8 +1,13 @@
 package com.github.dexluthor.client.ui;
 
+import com.github.dexluthor.client.DeliveryJournal;
+import com.github.dexluthor.client.DestinationService;
+import com.github.dexluthor.client.TransferMeta;
+import com.github.dexluthor.profile.EventType;
+import com.github.dexluthor.profile.TransferRecorder;
+import com.github.dexluthor.protocol.Handshake;
 import com.github.dexluthor.utils.ApplicationProperties;
-import com.github.dexluthor.utils.FileCrawler;
-import com.github.dexluthor.utils.Utils;
+import com.github.dexluthor.utils.Pair;
 import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
@@ -13,11 +18,12 @@ import javafx.scene.control.*;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
 import java.net.Socket;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
 
@@ -43,7 +49,11 @@ public class MainController {
     @FXML
     private Button startButton;
 
-    private Socket managingSocket;
+    private final List<Socket> managingSockets = new ArrayList<>();
+    // negotiated with each replica, in the order of props.getServerAddresses()
+    private final List<Handshake.Session> sessions = new ArrayList<>();
+    private DestinationService destination;
+    private DeliveryJournal journal;
     private int totalFileCount;
     private long totalFileSize;
     private CountDownLatch countDownLatch;
@@ -53,6 +63,9 @@ public class MainController {
         labelFrom.setText(props.getSourceDir());
         labelTo.setText(props.getDestinationDir());
 
+        destination = new DestinationService(new File(props.getDestinationDir()));
+        destination.sweepTrash();
+
         socketsSlider.setMin(1);
         val availableProcessors = Runtime.getRuntime().availableProcessors();
         socketsSlider.setMax(availableProcessors);
@@ -76,57 +89,88 @@ public class MainController {
     @FXML
     void onStartButtonClick() {
         props.setNumberOfSockets((int) socketsSlider.getValue());
+        final boolean resume = destination.hasContent() && restartWindow();
+        final String buttonText = startButton.getText();
+        startButton.setText("Connecting");
+        startButton.setDisable(true);
 
-        try {
-            managingSocket = new Socket(props.getIP(), props.getPort());
-            sendAndGetMeta();
-            for (int i = 0; i < socketsSlider.getValue(); i++) {
-                startSaving();
+        // crawling or purging the destination must not freeze the window
+        val handshake = new Service<TransferMeta>() {
+            protected Task<TransferMeta> createTask() {
+                return new Task<TransferMeta>() {
+                    protected TransferMeta call() throws IOException {
+                        return sendAndGetMeta(resume);
+                    }
+                };
             }
-            applyStylesToProgressBars(null);
-        } catch (IOException e) {
-            log.error("Connection refused");
-            return;
-        }
-        startButton.setText("Copying");
-        startButton.setDisable(true);
+        };
+        handshake.setOnSucceeded(e -> {
+            if (!startCopying(handshake.getValue())) {
+                startButton.setText(buttonText);
+                startButton.setDisable(false);
+            }
+        });
+        handshake.setOnFailed(e -> {
+            log.error("Connection refused", handshake.getException());
+            startButton.setText(buttonText);
+            startButton.setDisable(false);
+        });
+        handshake.start();
     }
 
-    private void sendAndGetMeta() {
-        countDownLatch = new CountDownLatch((int) socketsSlider.getValue());
-        try {
-            val outputStream = new DataOutputStream(managingSocket.getOutputStream());
-            val inputStream = new DataInputStream(managingSocket.getInputStream());
+    private TransferMeta sendAndGetMeta(final boolean resume) throws IOException {
+        Map<String, Long> pathDeliveredBytes = null;
+        // inventory starts only once the user chose to continue, a fresh start must not crawl
+        // the old content or write its journal while purge() moves it away
+        if (resume) {
+            pathDeliveredBytes = destination.inventory().join();
+        } else {
+            // old content is deleted in background while the transfer already runs
+            destination.purge();
+        }
 
-            outputStream.writeInt((int) socketsSlider.getValue());// sockets number
+        // every replica gets the same inventory and looks up only the files it owns
+        final List<Pair<String, Integer>> servers = props.getServerAddresses();
+        managingSockets.clear();
+        sessions.clear();
+        TransferMeta total = TransferMeta.EMPTY;
+        for (int i = 0; i < servers.size(); i++) {
+            val managingSocket = new Socket(servers.get(i).getKey(), servers.get(i).getValue());
+            managingSockets.add(managingSocket);
+            sessions.add(TransferMeta.negotiate(managingSocket));
+            total = total.plus(TransferMeta.exchange(managingSocket, props.getNumberOfSockets(), i, servers.size(), pathDeliveredBytes));
+        }
+        return total;
+    }
 
-            final Map<String, Long> pathDeliveredBytes = new HashMap<>();
-            for (File file : FileCrawler.crawl(new File(props.getDestinationDir()))) {
-                pathDeliveredBytes.put(file.getAbsolutePath(), file.length());
-            }
+    private boolean startCopying(final TransferMeta meta) {
+        totalFileCount = meta.getTotalFileCount();
+        totalFileSize = meta.getTotalBytes();
+        fileSizeProgress.set(meta.getDeliveredBytes());
+        fileProgress.set(meta.getDeliveredFileCount());
 
-            if (!pathDeliveredBytes.isEmpty()) {
-                if (restartWindow()) {
-                    outputStream.writeUTF("continue");
-                    new ObjectOutputStream(managingSocket.getOutputStream())
-                            .writeObject(pathDeliveredBytes);
-                } else {
-                    for (val file : Objects.requireNonNull(new File(props.getDestinationDir()).listFiles())) {
-                        Utils.deleteDirOrFile(file);
-                    }
-                    outputStream.writeUTF("start");
+        final List<Pair<String, Integer>> servers = props.getServerAddresses();
+        TransferRecorder.mark(EventType.REPLICAS, servers.size());
+        TransferRecorder.mark(EventType.SESSION, props.getNumberOfSockets());
+        countDownLatch = new CountDownLatch(props.getNumberOfSockets() * servers.size());
+        try {
+            if (journal != null) {
+                journal.close();
+            }
+            journal = destination.openJournal();
+            for (int server = 0; server < servers.size(); server++) {
+                for (int i = 0; i < props.getNumberOfSockets(); i++) {
+                    startSaving(servers.get(server), sessions.get(server));
                 }
-            } else {
-                outputStream.writeUTF("start");
             }
-            totalFileCount = inputStream.readInt();
-            fileSizeProgress.set(inputStream.readLong());
-            fileProgress.set(inputStream.readInt());
-            totalFileSize = inputStream.readLong();
+            applyStylesToProgressBars(null);
         } catch (IOException e) {
-            e.printStackTrace();
+            log.error("Connection refused");
+            return false;
         }
+        startButton.setText("Copying");
         changeButtonTextAfterFinish();
+        return true;
     }
 
     private void changeButtonTextAfterFinish() {
@@ -156,9 +200,9 @@ public class MainController {
         return "OK".equals(button.get().getText());
     }
 
-    private void startSaving() throws IOException {
-        Socket socket = new Socket(props.getIP(), props.getPort());
-        SavingService service = new SavingService(socket, fileProgress, fileSizeProgress);
+    private void startSaving(final Pair<String, Integer> server, final Handshake.Session session) throws IOException {
+        Socket socket = new Socket(server.getKey(), server.getValue());
+        SavingService service = new SavingService(socket, session, journal, fileProgress, fileSizeProgress);
 
         service.setOnFailed(event -> {
             if (startButton.isDisabled()) {
@@ -0,0 +1,31 @@
+package com.github.dexluthor.profile;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Kinds of recorded events, value of an event is in bytes unless said otherwise
+@AllArgsConstructor
+@Getter
+public enum EventType {
+    SESSION(1),         // value: data sockets per server
+    REPLICAS(2),        // value: servers the client pulls from
+    CHUNK_READ(3),      // server reads a chunk from disk
+    SOCKET_WRITE(4),    // server writes a chunk to the socket, long ones are stalls on a full socket buffer
+    WINDOW_WAIT(5),     // files waiting for the ack window, value: number of files
+    FILE_SENT(6),       // value: file length
+    SOCKET_READ(7),     // client waits for a chunk from the socket
+    DISK_WRITE(8),      // client writes a chunk to disk
+    DISK_SYNC(9),       // client forces a file to disk before acknowledging it
+    FILE_RECEIVED(10);  // value: file length
+
+    private final int code;
+
+    public static EventType of(int code) {
+        for (final EventType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown event type " + code);
+    }
+}
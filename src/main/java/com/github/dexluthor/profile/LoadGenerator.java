@@ -0,0 +1,144 @@
+package com.github.dexluthor.profile;
+
+import com.github.dexluthor.client.HeadlessClient;
+import com.github.dexluthor.server.FileSender;
+import com.github.dexluthor.utils.ApplicationProperties;
+import com.github.dexluthor.utils.Pair;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Replays a transfer on loopback: servers and the headless client run in this process over a generated dataset
+// with the file sizes, socket count and replica count of a recorded profile, or of a synthetic distribution.
+// Usage: LoadGenerator <profile.kprof|synthetic> <workDir> [sockets] [replicas] [syntheticFiles]
+@Slf4j
+public class LoadGenerator {
+    private static final int BLOCK = 1024 * 1024;
+    private final ApplicationProperties props = ApplicationProperties.INSTANCE;
+    private final List<Long> fileSizes;
+    private final int sockets;
+    private final int replicas;
+
+    public LoadGenerator(List<Long> fileSizes, int sockets, int replicas) {
+        this.fileSizes = fileSizes;
+        this.sockets = sockets;
+        this.replicas = replicas;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: LoadGenerator <profile.kprof|synthetic> <workDir> [sockets] [replicas] [syntheticFiles]");
+            System.exit(2);
+        }
+        List<Long> fileSizes;
+        int sockets = Runtime.getRuntime().availableProcessors();
+        int replicas = 1;
+        if ("synthetic".equalsIgnoreCase(args[0])) {
+            fileSizes = syntheticSizes(args.length > 4 ? Integer.parseInt(args[4]) : 1000);
+        } else {
+            final Profile profile = Profile.read(new File(args[0]));
+            fileSizes = profile.fileSizes();
+            if (!profile.hasAllFiles()) {
+                log.warn("{} events of the profile were overwritten, replaying only the last {} files of the transfer",
+                        profile.getDroppedEvents(), fileSizes.size());
+            }
+            sockets = profile.sockets() > 0 ? profile.sockets() : sockets;
+            replicas = profile.replicas();
+        }
+        if (args.length > 2) {
+            sockets = Integer.parseInt(args[2]);
+        }
+        if (args.length > 3) {
+            replicas = Integer.parseInt(args[3]);
+        }
+        if (!TransferRecorder.isEnabled()) {
+            log.info("profile.enabled is off, only the total time is measured");
+        }
+        final boolean finished = new LoadGenerator(fileSizes, sockets, replicas).run(new File(args[1]));
+        TransferRecorder.dump("loadgen");
+        System.exit(finished ? 0 : 1);
+    }
+
+    // log-normal sizes around 64 KB with a long tail, the same for every run
+    public static List<Long> syntheticSizes(int files) {
+        final Random random = new Random(42);
+        final List<Long> sizes = new ArrayList<>(files);
+        for (int i = 0; i < files; i++) {
+            sizes.add(Math.min(64L * BLOCK, (long) Math.exp(Math.log(64 * 1024) + 1.5 * random.nextGaussian())));
+        }
+        return sizes;
+    }
+
+    public boolean run(File workDir) throws IOException, InterruptedException {
+        final File source = generate(workDir);
+        final File destination = new File(workDir, "dst");
+        props.setSourceDir(source.getAbsolutePath());
+        props.setDestinationDir(destination.getAbsolutePath());
+
+        // servers bind before the client connects, then wait for it on their own threads
+        final ExecutorService servers = Executors.newFixedThreadPool(replicas);
+        final List<FileSender> senders = new ArrayList<>();
+        final List<Pair<String, Integer>> addresses = new ArrayList<>();
+        for (int i = 0; i < replicas; i++) {
+            final FileSender sender = new FileSender(props.getPort() + i).crawl(source).bind();
+            senders.add(sender);
+            addresses.add(new Pair<>("localhost", props.getPort() + i));
+            servers.execute(() -> sender.connect().send());
+        }
+
+        final long started = System.nanoTime();
+        final boolean finished;
+        try {
+            finished = new HeadlessClient(addresses, sockets, false).download();
+        } finally {
+            servers.shutdown();
+            servers.awaitTermination(1, TimeUnit.MINUTES);
+            for (final FileSender sender : senders) {
+                sender.close();
+            }
+        }
+        final double seconds = (System.nanoTime() - started) / 1e9;
+        final long totalBytes = fileSizes.stream().mapToLong(Long::longValue).sum();
+        log.info("{} files, {} MB over {} sockets x {} replicas: {} s, {} MB/s", fileSizes.size(), totalBytes / BLOCK,
+                sockets, replicas, String.format("%.2f", seconds), String.format("%.1f", totalBytes / BLOCK / seconds));
+        return finished;
+    }
+
+    // dataset directory is named after the sizes, so runs over the same profile reuse it
+    private File generate(File workDir) throws IOException {
+        final File source = new File(workDir, "src-" + Integer.toHexString(fileSizes.hashCode()));
+        if (source.isDirectory()) {
+            log.info("Reusing dataset {}", source);
+            return source;
+        }
+        final File partial = new File(workDir, source.getName() + ".partial");
+        final byte[] block = new byte[BLOCK];
+        new Random(7).nextBytes(block);
+        for (int i = 0; i < fileSizes.size(); i++) {
+            final File file = new File(partial, "d" + (i % 32) + File.separator + "f" + i + ".bin");
+            file.getParentFile().mkdirs();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BLOCK)) {
+                // files start at different offsets of the block, so they differ from each other
+                long left = fileSizes.get(i);
+                int offset = (i * 4099) % BLOCK;
+                while (left > 0) {
+                    final int part = (int) Math.min(BLOCK - offset, left);
+                    out.write(block, offset, part);
+                    left -= part;
+                    offset = 0;
+                }
+            }
+        }
+        if (!partial.renameTo(source)) {
+            throw new IOException("Cannot rename " + partial + " to " + source);
+        }
+        log.info("Generated dataset {} of {} files", source, fileSizes.size());
+        return source;
+    }
+}
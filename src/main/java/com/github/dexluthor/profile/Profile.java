@@ -0,0 +1,121 @@
+package com.github.dexluthor.profile;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.*;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Transfer profile written by TransferRecorder.
+// Usage: Profile <file.kprof> - prints count, bytes and latency percentiles of every event type
+@Getter
+@AllArgsConstructor
+public class Profile {
+    private final long startedMillis;
+    private final long droppedEvents;
+    private final List<Event> events;
+    // file lengths by FILE_SENT and FILE_RECEIVED, all of them; null in version 1 profiles
+    private final Map<EventType, List<Long>> files;
+
+    public static void main(String[] args) throws IOException {
+        final Profile profile = read(new File(args[0]));
+        System.out.println(profile.summary());
+    }
+
+    public static Profile read(final File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != TransferRecorder.MAGIC) {
+                throw new IOException(file + " is not a transfer profile");
+            }
+            final int version = in.readInt();
+            if (version < 1 || version > TransferRecorder.VERSION) {
+                throw new IOException("Unsupported profile version " + version);
+            }
+            final long startedMillis = in.readLong();
+            final long dropped = in.readLong();
+            final int count = in.readInt();
+            final List<Event> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                final long timestamp = in.readLong();
+                final EventType type = EventType.of(in.readUnsignedByte());
+                events.add(new Event(timestamp, type, in.readLong(), in.readLong(), in.readLong()));
+            }
+            if (version == 1) {
+                return new Profile(startedMillis, dropped, events, null);
+            }
+            final Map<EventType, List<Long>> files = new EnumMap<>(EventType.class);
+            final int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                final EventType type = EventType.of(in.readUnsignedByte());
+                files.computeIfAbsent(type, t -> new ArrayList<>()).add(in.readLong());
+            }
+            return new Profile(startedMillis, dropped, events, files);
+        }
+    }
+
+    public List<Event> of(final EventType type) {
+        return events.stream().filter(e -> e.getType() == type).collect(Collectors.toList());
+    }
+
+    // sizes of transferred files, client side ones are preferred as they are not repeated by retransmissions
+    public List<Long> fileSizes() {
+        if (files != null) {
+            return files.getOrDefault(EventType.FILE_RECEIVED, files.getOrDefault(EventType.FILE_SENT, Collections.emptyList()));
+        }
+        List<Event> fileEvents = of(EventType.FILE_RECEIVED);
+        if (fileEvents.isEmpty()) {
+            fileEvents = of(EventType.FILE_SENT);
+        }
+        return fileEvents.stream().map(Event::getValue).collect(Collectors.toList());
+    }
+
+    // false for a version 1 profile whose ring overwrote some events, it has only the last files of the transfer
+    public boolean hasAllFiles() {
+        return files != null || droppedEvents == 0;
+    }
+
+    public int sockets() {
+        return (int) of(EventType.SESSION).stream().mapToLong(Event::getValue).max().orElse(0);
+    }
+
+    public int replicas() {
+        return (int) of(EventType.REPLICAS).stream().mapToLong(Event::getValue).max().orElse(1);
+    }
+
+    public String summary() {
+        final StringBuilder summary = new StringBuilder(String.format("Profile of %tF %<tT, %d events, %d dropped, %d files%s%n",
+                new Date(startedMillis), events.size(), droppedEvents, fileSizes().size(), hasAllFiles() ? "" : " (only the last ones)"));
+        summary.append(String.format("%-14s %9s %10s %10s %10s %10s %10s%n",
+                "event", "count", "MB", "p50 us", "p99 us", "max us", "total ms"));
+        for (final EventType type : EventType.values()) {
+            final List<Event> ofType = of(type);
+            if (ofType.isEmpty()) {
+                continue;
+            }
+            final long[] durations = ofType.stream().mapToLong(Event::getDuration).sorted().toArray();
+            final long bytes = ofType.stream().mapToLong(Event::getValue).sum();
+            summary.append(String.format("%-14s %9d %10d %10d %10d %10d %10d%n", type, durations.length,
+                    type == EventType.WINDOW_WAIT || type == EventType.SESSION || type == EventType.REPLICAS ? 0 : bytes / (1024 * 1024),
+                    percentile(durations, 0.5) / 1000, percentile(durations, 0.99) / 1000,
+                    durations[durations.length - 1] / 1000, Arrays.stream(durations).sum() / 1_000_000));
+        }
+        return summary.toString();
+    }
+
+    private static long percentile(final long[] sorted, final double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.round(percentile * (sorted.length - 1)))];
+    }
+
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Event {
+        private final long timestamp;   // ns since the recorder started
+        private final EventType type;
+        private final long thread;
+        private final long duration;    // ns
+        private final long value;
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.dexluthor.profile;
+
+import com.github.dexluthor.utils.ApplicationProperties;
+import lombok.experimental.UtilityClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ring buffer of transfer events, enabled by profile.enabled. Call sites take timestamps from start(), so a disabled
+// recorder costs a branch per call and no clock reads.
+// Oldest events are overwritten when it is full, the buffer is written out by dump() after the transfer.
+// Sizes of sent and received files are also kept aside and never overwritten, they are what LoadGenerator replays.
+@Slf4j
+@UtilityClass
+public class TransferRecorder {
+    static final int MAGIC = 0x4B505246;    // "KPRF"
+    static final int VERSION = 2;
+    // start, type and thread, duration, value
+    private final int FIELDS = 4;
+
+    private final boolean enabled = ApplicationProperties.INSTANCE.isProfileEnabled();
+    private final int capacity = enabled ? powerOfTwo(ApplicationProperties.INSTANCE.getProfileCapacity()) : 0;
+    private final long[] events = new long[capacity * FIELDS];
+    private final AtomicLong cursor = new AtomicLong();
+    // event code in the top byte, file length below, like the type and thread of events
+    private long[] files = new long[enabled ? 1024 : 0];
+    private int fileCount;
+    private final long originNanos = System.nanoTime();
+    private final long originMillis = System.currentTimeMillis();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // System.nanoTime() while recording, 0 otherwise - pass the result to record() as `started`
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    // event which started at start() value `started` and ends now
+    public void record(final EventType type, final long started, final long value) {
+        if (!enabled) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final int slot = (int) (cursor.getAndIncrement() & (capacity - 1)) * FIELDS;
+        events[slot] = started;
+        events[slot + 1] = (long) type.getCode() << 56 | Thread.currentThread().getId();
+        events[slot + 2] = now - started;
+        events[slot + 3] = value;
+        if (type == EventType.FILE_SENT || type == EventType.FILE_RECEIVED) {
+            file(type, value);
+        }
+    }
+
+    private synchronized void file(final EventType type, final long length) {
+        if (fileCount == files.length) {
+            files = Arrays.copyOf(files, 2 * files.length);
+        }
+        files[fileCount++] = (long) type.getCode() << 56 | length;
+    }
+
+    private synchronized long[] files() {
+        return Arrays.copyOf(files, fileCount);
+    }
+
+    public void mark(final EventType type, final long value) {
+        if (enabled) {
+            record(type, System.nanoTime(), value);
+        }
+    }
+
+    // writes recorded events to profile.dir as <role>-<millis>.kprof, call when the transfer is over
+    public File dump(final String role) {
+        if (!enabled || cursor.get() == 0) {
+            return null;
+        }
+        final File directory = new File(ApplicationProperties.INSTANCE.getProfileDir());
+        final File file = new File(directory, role + "-" + System.currentTimeMillis() + ".kprof");
+        try {
+            directory.mkdirs();
+            dump(file);
+            log.info("Transfer profile written to {}", file.getAbsolutePath());
+            return file;
+        } catch (IOException e) {
+            log.warn("Cannot write transfer profile {}", file, e);
+            return null;
+        }
+    }
+
+    private void dump(final File file) throws IOException {
+        final long recorded = cursor.get();
+        final int count = (int) Math.min(recorded, capacity);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(originMillis);
+            out.writeLong(recorded - count);    // overwritten events
+            out.writeInt(count);
+            for (long seq = recorded - count; seq < recorded; seq++) {
+                final int slot = (int) (seq & (capacity - 1)) * FIELDS;
+                out.writeLong(events[slot] - originNanos);
+                out.writeByte((int) (events[slot + 1] >>> 56));
+                out.writeLong(events[slot + 1] & 0x00FF_FFFF_FFFF_FFFFL);
+                out.writeLong(events[slot + 2]);
+                out.writeLong(events[slot + 3]);
+            }
+            final long[] sizes = files();
+            out.writeInt(sizes.length);
+            for (final long size : sizes) {
+                out.writeByte((int) (size >>> 56));
+                out.writeLong(size & 0x00FF_FFFF_FFFF_FFFFL);
+            }
+        }
+    }
+
+    private int powerOfTwo(final int requested) {
+        final int atLeast = Math.max(1024, Math.min(requested, 1 << 24));
+        return Integer.bitCount(atLeast) == 1 ? atLeast : Integer.highestOneBit(atLeast) << 1;
+    }
+}
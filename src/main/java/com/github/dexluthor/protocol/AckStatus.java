@@ -0,0 +1,8 @@
+package com.github.dexluthor.protocol;
+
+public enum AckStatus {
+    // file and every earlier file on the socket are saved
+    OK,
+    // only this file, its checksum did not match and it was truncated back to its offset
+    CORRUPT
+}
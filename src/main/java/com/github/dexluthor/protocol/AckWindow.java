@@ -0,0 +1,78 @@
+package com.github.dexluthor.protocol;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Sender side of the acknowledgements on one data socket. At most `size` files are unacknowledged,
+// ACK OK releases the file and every earlier one, ACK CORRUPT only the file which is to be sent again.
+public class AckWindow<T> {
+    private final ConcurrentNavigableMap<Long, T> inFlight = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Semaphore permits;
+    private final int size;
+
+    public AckWindow(final int size) {
+        this.size = size;
+        this.permits = new Semaphore(size);
+    }
+
+    // blocks until `files` more files may be sent
+    public void acquire(final int files) throws InterruptedException, ProtocolException {
+        permits.acquire(files);
+        checkOpen();
+    }
+
+    public void sent(final long fileId, final T file) {
+        inFlight.put(fileId, file);
+    }
+
+    // a file the receiver found corrupted goes to `resend` before its permit is released,
+    // so awaitAll() cannot return while the file is neither in flight nor queued again
+    public void onAck(final FrameReader.Ack ack, final Consumer<? super T> resend) {
+        if (ack.getStatus() == AckStatus.OK) {
+            int acknowledged = 0;
+            Map.Entry<Long, T> oldest;
+            while ((oldest = inFlight.firstEntry()) != null && oldest.getKey() <= ack.getFileId()) {
+                inFlight.remove(oldest.getKey());
+                acknowledged++;
+            }
+            permits.release(acknowledged);
+            return;
+        }
+        final T corrupted = inFlight.remove(ack.getFileId());
+        if (corrupted != null) {
+            try {
+                resend.accept(corrupted);
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    // blocks until every sent file is acknowledged
+    public void awaitAll() throws InterruptedException, ProtocolException {
+        permits.acquire(size);
+        permits.release(size);
+        checkOpen();
+    }
+
+    // no more acknowledgements will come, wakes up the sender if it waits for them
+    public void close() {
+        closed.set(true);
+        permits.release(size);
+    }
+
+    public int unacknowledged() {
+        return inFlight.size();
+    }
+
+    private void checkOpen() throws ProtocolException {
+        if (closed.get()) {
+            throw new ProtocolException(inFlight.size() + " files left unacknowledged");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.dexluthor.protocol;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+// Reads frames written by FrameWriter. next() reads the header, then the matching read method
+// must consume the payload. Payload lengths are checked against the frame type.
+public class FrameReader {
+    private static final int MAX_TEXT_LENGTH = 64 * 1024;
+
+    private final DataInputStream in;
+    private FrameType type;
+    private int payloadLength;
+
+    public FrameReader(final InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    public FrameType next() throws IOException {
+        type = FrameType.of(in.readByte());
+        payloadLength = in.readInt();
+        if (payloadLength < 0) {
+            throw new ProtocolException("Negative payload length of " + type);
+        }
+        return type;
+    }
+
+    public FileBegin readFileBegin() throws IOException {
+        expect(FrameType.FILE_BEGIN);
+        final int pathLength = payloadLength - 3 * Long.BYTES;
+        if (pathLength <= 0 || pathLength > MAX_TEXT_LENGTH) {
+            throw new ProtocolException("Invalid path length " + pathLength);
+        }
+        final long fileId = in.readLong();
+        final long offset = in.readLong();
+        final long length = in.readLong();
+        if (offset < 0 || offset > length) {
+            throw new ProtocolException("Offset " + offset + " outside of file of " + length + " bytes");
+        }
+        return new FileBegin(fileId, offset, length, readText(pathLength));
+    }
+
+    // reads the whole DATA payload into the buffer, returns its length
+    public int readData(final byte[] buffer) throws IOException {
+        expect(FrameType.DATA);
+        if (payloadLength > buffer.length) {
+            throw new ProtocolException("Data frame of " + payloadLength + " bytes exceeds chunk size " + buffer.length);
+        }
+        in.readFully(buffer, 0, payloadLength);
+        return payloadLength;
+    }
+
+    public long readHole() throws IOException {
+        expect(FrameType.HOLE, Long.BYTES);
+        final long length = in.readLong();
+        if (length < 1) {
+            throw new ProtocolException("Hole of " + length + " bytes");
+        }
+        return length;
+    }
+
+    public FileEnd readFileEnd() throws IOException {
+        expect(FrameType.FILE_END, 2 * Long.BYTES);
+        return new FileEnd(in.readLong(), in.readLong());
+    }
+
+    public int readBatch() throws IOException {
+        expect(FrameType.BATCH, Integer.BYTES);
+        final int fileCount = in.readInt();
+        if (fileCount < 1) {
+            throw new ProtocolException("Batch of " + fileCount + " files");
+        }
+        return fileCount;
+    }
+
+    public Ack readAck() throws IOException {
+        expect(FrameType.ACK, Long.BYTES + 1);
+        final long fileId = in.readLong();
+        final int status = in.readUnsignedByte();
+        if (status >= AckStatus.values().length) {
+            throw new ProtocolException("Unknown ack status " + status);
+        }
+        return new Ack(fileId, AckStatus.values()[status]);
+    }
+
+    public String readError() throws IOException {
+        expect(FrameType.ERROR);
+        if (payloadLength > MAX_TEXT_LENGTH) {
+            throw new ProtocolException("Error message of " + payloadLength + " bytes");
+        }
+        return readText(payloadLength);
+    }
+
+    public void readEnd() throws IOException {
+        expect(FrameType.END, 0);
+    }
+
+    private String readText(final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void expect(final FrameType expected, final int expectedLength) throws ProtocolException {
+        expect(expected);
+        if (payloadLength != expectedLength) {
+            throw new ProtocolException(expected + " frame must have " + expectedLength + " bytes, got " + payloadLength);
+        }
+    }
+
+    private void expect(final FrameType expected) throws ProtocolException {
+        if (type != expected) {
+            throw new ProtocolException("Expected " + expected + " frame, got " + type);
+        }
+        type = null;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class FileBegin {
+        private final long fileId;
+        private final long offset;
+        private final long length;
+        private final String path;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class FileEnd {
+        private final long fileId;
+        private final long checksum;
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class Ack {
+        private final long fileId;
+        private final AckStatus status;
+    }
+}
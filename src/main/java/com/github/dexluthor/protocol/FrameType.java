@@ -0,0 +1,31 @@
+package com.github.dexluthor.protocol;
+
+public enum FrameType {
+    FILE_BEGIN(1),
+    DATA(2),
+    FILE_END(3),
+    BATCH(4),
+    ACK(5),
+    ERROR(6),
+    END(7),
+    HOLE(8);
+
+    private final byte code;
+
+    FrameType(final int code) {
+        this.code = (byte) code;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public static FrameType of(final byte code) throws ProtocolException {
+        for (final FrameType type : values()) {
+            if (type.code == code) {
+                return type;
+            }
+        }
+        throw new ProtocolException("Unknown frame type " + code);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.dexluthor.protocol;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Every frame is [type: byte][payload length: int][payload]. Nothing is flushed implicitly,
+// so several frames can go out in one write.
+public class FrameWriter {
+    private final DataOutputStream out;
+
+    public FrameWriter(final OutputStream out) {
+        this.out = new DataOutputStream(out);
+    }
+
+    public void writeFileBegin(final long fileId, final long offset, final long length, final String path) throws IOException {
+        final byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        header(FrameType.FILE_BEGIN, 3 * Long.BYTES + pathBytes.length);
+        out.writeLong(fileId);
+        out.writeLong(offset);
+        out.writeLong(length);
+        out.write(pathBytes);
+    }
+
+    public void writeData(final byte[] buffer, final int offset, final int length) throws IOException {
+        header(FrameType.DATA, length);
+        out.write(buffer, offset, length);
+    }
+
+    // length zero bytes the receiver does not write, only skips
+    public void writeHole(final long length) throws IOException {
+        header(FrameType.HOLE, Long.BYTES);
+        out.writeLong(length);
+    }
+
+    public void writeFileEnd(final long fileId, final long checksum) throws IOException {
+        header(FrameType.FILE_END, 2 * Long.BYTES);
+        out.writeLong(fileId);
+        out.writeLong(checksum);
+    }
+
+    public void writeBatch(final int fileCount) throws IOException {
+        header(FrameType.BATCH, Integer.BYTES);
+        out.writeInt(fileCount);
+    }
+
+    public void writeAck(final long fileId, final AckStatus status) throws IOException {
+        header(FrameType.ACK, Long.BYTES + 1);
+        out.writeLong(fileId);
+        out.writeByte(status.ordinal());
+    }
+
+    public void writeError(final String message) throws IOException {
+        final byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        header(FrameType.ERROR, messageBytes.length);
+        out.write(messageBytes);
+    }
+
+    public void writeEnd() throws IOException {
+        header(FrameType.END, 0);
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private void header(final FrameType type, final int payloadLength) throws IOException {
+        out.writeByte(type.getCode());
+        out.writeInt(payloadLength);
+    }
+}
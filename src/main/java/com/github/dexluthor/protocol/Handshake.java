@@ -0,0 +1,74 @@
+package com.github.dexluthor.protocol;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// First exchange on the managing socket. Client offers its newest version, capabilities and ack window,
+// server answers with what both sides support. Version 1 was the unframed poison pill stream.
+public class Handshake {
+    public static final int MAGIC = 0x4B4F5052; // "KOPR"
+    public static final int VERSION = 2;
+    public static final int MIN_VERSION = 2;
+    private static final int UNSUPPORTED = 0;
+
+    // small files are grouped and acknowledged together
+    public static final int CAP_BATCH = 1;
+    // receiver forces every file to disk before acknowledging it
+    public static final int CAP_DURABLE_ACKS = 1 << 1;
+    // zero-filled chunks are sent as HOLE frames and left unwritten by the receiver
+    public static final int CAP_SPARSE = 1 << 2;
+    public static final int SUPPORTED_CAPABILITIES = CAP_BATCH | CAP_DURABLE_ACKS | CAP_SPARSE;
+
+    public static void offer(final DataOutputStream out, final int capabilities, final int ackWindow) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(capabilities);
+        out.writeInt(ackWindow);
+        out.flush();
+    }
+
+    public static Session accept(final DataInputStream in, final DataOutputStream out, final int ackWindow) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new ProtocolException("Not a client of this protocol");
+        }
+        final int version = Math.min(in.readInt(), VERSION);
+        final int capabilities = in.readInt() & SUPPORTED_CAPABILITIES;
+        final int window = Math.min(in.readInt(), ackWindow);
+        if (version < MIN_VERSION || window < 1) {
+            out.writeInt(UNSUPPORTED);
+            out.flush();
+            throw new ProtocolException("Unsupported protocol version " + version + " or ack window " + window);
+        }
+        out.writeInt(version);
+        out.writeInt(capabilities);
+        out.writeInt(window);
+        out.flush();
+        return new Session(version, capabilities, window);
+    }
+
+    public static Session await(final DataInputStream in) throws IOException {
+        final int version = in.readInt();
+        if (version == UNSUPPORTED) {
+            throw new ProtocolException("Server does not support protocol version " + VERSION);
+        }
+        return new Session(version, in.readInt(), in.readInt());
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class Session {
+        private final int version;
+        private final int capabilities;
+        private final int ackWindow;
+
+        public boolean has(final int capability) {
+            return (capabilities & capability) != 0;
+        }
+    }
+}
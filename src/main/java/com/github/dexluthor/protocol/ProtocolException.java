@@ -0,0 +1,9 @@
+package com.github.dexluthor.protocol;
+
+import java.io.IOException;
+
+public class ProtocolException extends IOException {
+    public ProtocolException(final String message) {
+        super(message);
+    }
+}
@@ -1,23 +1,25 @@
 package com.github.dexluthor.server;
 
+import com.github.dexluthor.profile.EventType;
+import com.github.dexluthor.profile.TransferRecorder;
+import com.github.dexluthor.protocol.Handshake;
+import com.github.dexluthor.protocol.ProtocolException;
 import com.github.dexluthor.server.concurrent.FileSendingJob;
 import com.github.dexluthor.utils.ApplicationProperties;
+import com.github.dexluthor.utils.ConsistentHashRing;
 import com.github.dexluthor.utils.FileCrawler;
 import com.github.dexluthor.utils.Pair;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
-import lombok.var;
 
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import static com.github.dexluthor.utils.Utils.relativePath;
 import static com.github.dexluthor.utils.Utils.unsentIntersection;
 
 @Slf4j
@@ -26,13 +28,27 @@ public class FileSender {
     private final List<Socket> sockets = new LinkedList<>();
     private final BlockingQueue<Pair<String, Long>> filesToSend = new LinkedBlockingQueue<>();
     private final AtomicBoolean isRunning = new AtomicBoolean();
+    private final Map<String, Long> crawledFiles = new HashMap<>();
+    private final Map<String, Long> ownedFiles = new HashMap<>();
     private ConcurrentMap<String, Long> filePathToBytes = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Integer> retransmissions = new ConcurrentHashMap<>();
     private ServerSocket serverSocket;
+    private Handshake.Session session;
     private ExecutorService executor;
 
+    private final int port;
+
     private long totalMb, actualMb;
     private int totalFileCount;
 
+    public FileSender() {
+        this(ApplicationProperties.INSTANCE.getPort());
+    }
+
+    public FileSender(int port) {
+        this.port = port;
+    }
+
     public boolean isRunning() {
         return isRunning.get();
     }
@@ -45,22 +61,27 @@ public class FileSender {
         log.trace("started crawling");
 
         for (val file : FileCrawler.crawl(fileToCrawl)) {
-            totalFileCount++;
-            totalMb += file.length();
-            filePathToBytes.put(file.getAbsolutePath(), 0L);
+            crawledFiles.put(file.getAbsolutePath(), file.length());
         }
 
         log.trace("finished crawling");
         return this;
     }
 
+    // opens the server socket without waiting for the client, connect() does it when not bound yet
+    public FileSender bind() throws IOException {
+        if (serverSocket == null) {
+            serverSocket = new ServerSocket(port);
+            log.info("Opening server socket " + serverSocket);
+        }
+        return this;
+    }
+
     public FileSender connect() {
         if (!isRunning.get()) {
             isRunning.set(true);
             try {
-                serverSocket = new ServerSocket(props.getPort());
-                log.info("Opening server socket " + serverSocket);
-
+                bind();
                 getAndSendMeta();
                 connectConsumers();
             } catch (IOException e) {
@@ -70,37 +91,80 @@ public class FileSender {
         return this;
     }
 
-    @SuppressWarnings("unchecked")
-    private void getAndSendMeta() {
-        try {
+    // a client refused by the handshake or lost during it opens no data sockets, so its managing socket
+    // is closed and the next connection is again expected to be a managing one
+    private void getAndSendMeta() throws IOException {
+        while (true) {
             log.debug("Waiting for managing socket from client");
-            Socket managingSocket = serverSocket.accept();
+            final Socket managingSocket = serverSocket.accept();
             log.debug("Managing socket connected");
+            try {
+                exchangeMeta(managingSocket);
+                return;
+            } catch (IOException | ClassNotFoundException e) {
+                log.warn("Refused client {}: {}", managingSocket.getRemoteSocketAddress(), e.getMessage());
+                managingSocket.close();
+            }
+        }
+    }
 
-            val inputStream = new DataInputStream(managingSocket.getInputStream());
-            val outputStream = new DataOutputStream(managingSocket.getOutputStream());
+    @SuppressWarnings("unchecked")
+    private void exchangeMeta(final Socket managingSocket) throws IOException, ClassNotFoundException {
+        val inputStream = new DataInputStream(managingSocket.getInputStream());
+        val outputStream = new DataOutputStream(new BufferedOutputStream(managingSocket.getOutputStream()));
+
+        final Handshake.Session session = Handshake.accept(inputStream, outputStream, props.getAckWindow());   // version and capabilities
+        log.info("Negotiated {}", session);
+        final int numberOfSockets = inputStream.readInt();                                       // number of sockets
+        final int replicaIndex = inputStream.readInt();                                          // this server's replica
+        final int replicaCount = inputStream.readInt();                                          // replicas client pulls from
+        final String continueOrStart = inputStream.readUTF();                                    // continue or start
+        if (numberOfSockets < 1 || replicaIndex < 0 || replicaIndex >= replicaCount) {
+            throw new ProtocolException("Invalid " + numberOfSockets + " sockets for replica " + replicaIndex + " of " + replicaCount);
+        }
 
-            props.setNumberOfSockets(inputStream.readInt());                                         // number of sockets
-            final String continueOrStart = inputStream.readUTF();                                    // continue or start
+        final ConsistentHashRing ring = new ConsistentHashRing(replicaCount);
+        takePartition(ring, replicaIndex);
 
-            var mapFromClient = Collections.<String, Long>emptyMap();
-            if ("continue".equalsIgnoreCase(continueOrStart)) {
-                mapFromClient = (Map<String, Long>) new ObjectInputStream(managingSocket.getInputStream()).readObject();
+        actualMb = 0;
+        if ("continue".equalsIgnoreCase(continueOrStart)) {
+            // relative path -> delivered bytes, only paths this replica owns are ever looked up
+            val mapFromClient = (Map<String, Long>) new ObjectInputStream(managingSocket.getInputStream()).readObject();
+            filePathToBytes = new ConcurrentHashMap<>(unsentIntersection(ownedFiles, mapFromClient, props.getSourceDir()));
 
-                actualMb = mapFromClient.values().stream().reduce(Long::sum).orElse(0L);
+            actualMb = totalMb;
+            for (val unsent : filePathToBytes.entrySet()) {
+                actualMb -= ownedFiles.get(unsent.getKey()) - unsent.getValue();
+            }
+        }
+        filesToSend.clear();
+        filesToSend.addAll(Pair.ofMap(filePathToBytes));
+        outputStream.writeInt(totalFileCount);                          // total files
+        outputStream.writeLong(actualMb);                               // actual mb
+        outputStream.writeInt(totalFileCount - filesToSend.size());  // actual files
+        outputStream.writeLong(totalMb);                                // total mb
+        outputStream.flush();
+
+        // only a client which got through the whole exchange sets up the transfer
+        this.session = session;
+        props.setNumberOfSockets(numberOfSockets);
+    }
 
-                filePathToBytes = new ConcurrentHashMap<>(unsentIntersection(filePathToBytes, mapFromClient));
+    // keeps only files this replica is responsible for, the other replicas send the rest
+    private void takePartition(final ConsistentHashRing ring, final int replicaIndex) {
+        ownedFiles.clear();
+        filePathToBytes = new ConcurrentHashMap<>();
+        totalFileCount = 0;
+        totalMb = 0;
+        for (final Map.Entry<String, Long> file : crawledFiles.entrySet()) {
+            if (ring.isOwnedBy(replicaIndex, relativePath(file.getKey(), props.getSourceDir()))) {
+                ownedFiles.put(file.getKey(), file.getValue());
+                filePathToBytes.put(file.getKey(), 0L);
+                totalFileCount++;
+                totalMb += file.getValue();
             }
-            filesToSend.addAll(Pair.ofMap(filePathToBytes));
-            outputStream.writeInt(totalFileCount);                          // total files
-            outputStream.writeLong(actualMb);                               // actual mb
-            outputStream.writeInt(totalFileCount - filesToSend.size());  // actual files
-            outputStream.writeLong(totalMb);                                // total mb
-        } catch (IOException e) {
-            e.printStackTrace();
-        } catch (ClassNotFoundException e) {
-            log.error("Internal error", e);
         }
+        log.info("Replica {} owns {} files", replicaIndex, totalFileCount);
     }
 
     private void connectConsumers() throws IOException {
@@ -126,22 +190,45 @@ public class FileSender {
         }
     }
 
+    // false once the file ran out of retransmissions, the caller fails the transfer
+    public boolean retransmit(Pair<String, Long> pathBytes) {
+        final int attempt = retransmissions.merge(pathBytes.getKey(), 1, Integer::sum);
+        if (attempt > props.getMaxRetransmissions()) {
+            log.error("{} failed verification {} times, giving up", pathBytes.getKey(), attempt);
+            return false;
+        }
+        log.warn("{} failed verification, retransmitting", pathBytes.getKey());
+        filesToSend.add(pathBytes);
+        return true;
+    }
+
+    // returns when every data socket has sent END or given up
     public void send() {
+        TransferRecorder.mark(EventType.SESSION, props.getNumberOfSockets());
         final CountDownLatch countDownLatch = new CountDownLatch(props.getNumberOfSockets());
-        executor = Executors.newFixedThreadPool(props.getNumberOfSockets());
+        // every socket has a sending job and a job reading its acknowledgements
+        executor = Executors.newFixedThreadPool(2 * props.getNumberOfSockets());
         try {
             for (Socket socket : sockets) {
-                DataOutputStream dataOutputStream = new DataOutputStream(socket.getOutputStream());
-                executor.execute(new FileSendingJob(dataOutputStream, filesToSend, this, countDownLatch));
+                val job = new FileSendingJob(new BufferedOutputStream(socket.getOutputStream()),
+                        new BufferedInputStream(socket.getInputStream()), filesToSend, this, countDownLatch, session);
+                executor.execute(job);
+                executor.execute(job.ackReader());
             }
         } catch (IOException e) {
             e.printStackTrace();
         }
         try {
             countDownLatch.await();
-            System.exit(0);
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
+        executor.shutdown();
+    }
+
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
     }
 }
\ No newline at end of file
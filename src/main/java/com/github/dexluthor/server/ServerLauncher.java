@@ -1,14 +1,21 @@
 package com.github.dexluthor.server;
 
+import com.github.dexluthor.profile.TransferRecorder;
 import com.github.dexluthor.utils.ApplicationProperties;
 
 import java.io.File;
 
 public class ServerLauncher {
+    // optional argument overrides server.port, so several replicas can run on one host
     public static void main(String[] args) {
+        if (args.length > 0) {
+            ApplicationProperties.INSTANCE.setPort(Integer.parseInt(args[0]));
+        }
         new FileSender()
                 .crawl(new File(ApplicationProperties.INSTANCE.getSourceDir()))
                 .connect()
                 .send();
+        TransferRecorder.dump("server");
+        System.exit(0);
     }
 }
@@ -1,116 +1,265 @@
 package com.github.dexluthor.server.concurrent;
 
+import com.github.dexluthor.profile.EventType;
+import com.github.dexluthor.profile.TransferRecorder;
+import com.github.dexluthor.protocol.AckWindow;
+import com.github.dexluthor.protocol.FrameReader;
+import com.github.dexluthor.protocol.FrameType;
+import com.github.dexluthor.protocol.FrameWriter;
+import com.github.dexluthor.protocol.Handshake;
+import com.github.dexluthor.protocol.ProtocolException;
 import com.github.dexluthor.server.FileSender;
 import com.github.dexluthor.utils.ApplicationProperties;
 import com.github.dexluthor.utils.Pair;
+import com.github.dexluthor.utils.ZeroBlocks;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.io.*;
-import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
 
+import static com.github.dexluthor.utils.Utils.relativePath;
+
+// Sends files over one data socket without waiting for each of them to be acknowledged.
+// Up to ackWindow files may be unacknowledged, acknowledgements are read by ackReader() on another thread.
 @Slf4j
 public class FileSendingJob implements Runnable {
-    private final DataOutputStream outputStream;
+    private final FrameWriter outputStream;
+    private final FrameReader inputStream;
     private final BlockingQueue<Pair<String, Long>> pathsBytes;
     private final FileSender fileSender;
     private final CountDownLatch countDownLatch;
+    private final Handshake.Session session;
     private final ApplicationProperties props = ApplicationProperties.INSTANCE;
 
-    public FileSendingJob(DataOutputStream outputStream, BlockingQueue<Pair<String, Long>> pathsBytes, final FileSender fileSender, final CountDownLatch countDownLatch) {
-        this.outputStream = outputStream;
+    private final AckWindow<Pair<String, Long>> window;
+    private final byte[] buffer;
+    private long nextFileId;
+    private long checksumNanos;
+    // set by ackReader() when a file cannot be delivered, the transfer on this socket ends with ERROR instead of END
+    private volatile String failure;
+
+    public FileSendingJob(OutputStream outputStream, InputStream inputStream, BlockingQueue<Pair<String, Long>> pathsBytes,
+                          final FileSender fileSender, final CountDownLatch countDownLatch, final Handshake.Session session) {
+        this.outputStream = new FrameWriter(outputStream);
+        this.inputStream = new FrameReader(inputStream);
         this.pathsBytes = pathsBytes;
         this.fileSender = fileSender;
         this.countDownLatch = countDownLatch;
+        this.session = session;
+        this.window = new AckWindow<>(session.getAckWindow());
+        this.buffer = new byte[props.getChunkSize()];
     }
 
     @Override
     public void run() {
-        sendFiles();
-        sendPoison();
+        final long started = System.nanoTime();
+        try {
+            sendFiles();
+            if (failure != null) {
+                sendError();
+            } else {
+                sendEnd();
+            }
+        } catch (IOException e) {
+            log.error("Connection lost in FileSendingJob: {}", e.getMessage());
+            synchronized (fileSender) {
+                if (fileSender.isRunning()) {
+                    log.info("reconnect");
+                    fileSender.setIsRunning(false);
+                    fileSender.reconnect();
+                }
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        // share of the whole job including waits for the socket and acknowledgements, that is what verification costs
+        final long elapsed = System.nanoTime() - started;
+        log.debug("Checksum took {}% of {} ms on this socket", String.format("%.2f", 100.0 * checksumNanos / elapsed), elapsed / 1_000_000);
+        countDownLatch.countDown();
     }
 
-    private void sendFiles() {
-        try {
-            while (true) {
-                final Pair<String, Long> takenPair;
-                synchronized (pathsBytes) {
-                    if (!pathsBytes.isEmpty()) {
-                        takenPair = pathsBytes.take();
+    public Runnable ackReader() {
+        return () -> {
+            try {
+                while (true) {
+                    final FrameType type = inputStream.next();
+                    if (type == FrameType.ACK) {
+                        window.onAck(inputStream.readAck(), this::resend);
+                    } else if (type == FrameType.ERROR) {
+                        throw new ProtocolException("Client failed: " + inputStream.readError());
                     } else {
-                        break;
+                        throw new ProtocolException("Unexpected " + type + " frame from client");
                     }
                 }
-                File file = new File(takenPair.getKey());
+            } catch (EOFException e) {
+                log.debug("Client closed acknowledgements");
+            } catch (IOException e) {
+                log.warn("Reading acknowledgements failed: {}", e.getMessage());
+            } finally {
+                window.close();
+            }
+        };
+    }
 
-                RandomAccessFile raf = null;
-                try {
-                    outputStream.writeLong(file.length());
-                    outputStream.writeUTF(props.getDestinationDir() +
-                            file.getAbsolutePath().substring(props.getSourceDir().length()));
+    private void resend(final Pair<String, Long> corrupted) {
+        if (!fileSender.retransmit(corrupted)) {
+            failure = "Giving up on " + relativePath(corrupted.getKey(), props.getSourceDir())
+                    + " after " + props.getMaxRetransmissions() + " retransmissions";
+        }
+    }
 
-                    byte[] buffer = new byte[props.getChunkSize()];
-                    long totallyRead = takenPair.getValue();
+    private void sendFiles() throws IOException, InterruptedException {
+        final int maxBatchFiles = session.has(Handshake.CAP_BATCH) ? Math.min(props.getMaxBatchFiles(), session.getAckWindow()) : 1;
+        Outgoing carried = null;
+        while (failure == null) {
+            final Outgoing first = carried != null ? carried : open(pathsBytes.poll());
+            carried = null;
+            if (first == null) {
+                // corrupted files come back to the queue only until everything is acknowledged
+                window.awaitAll();
+                if (pathsBytes.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
 
-                    raf = new RandomAccessFile(file, "r");
-                    raf.seek(totallyRead);
+            // small files go back to back and are acknowledged once
+            final List<Outgoing> batch = new ArrayList<>();
+            batch.add(first);
+            while (batch.size() < maxBatchFiles && first.isSmall()) {
+                final Outgoing next = open(pathsBytes.poll());
+                if (next == null) {
+                    break;
+                }
+                if (!next.isSmall()) {
+                    carried = next;
+                    break;
+                }
+                batch.add(next);
+            }
 
-                    while (totallyRead != file.length()) {
-                        if (file.length() - totallyRead < props.getChunkSize()) {
-                            buffer = new byte[(int) (file.length() - totallyRead)];
-                        }
-                        totallyRead += raf.read(buffer);
+            final long waitStarted = TransferRecorder.start();
+            window.acquire(batch.size());
+            TransferRecorder.record(EventType.WINDOW_WAIT, waitStarted, batch.size());
+            if (batch.size() > 1) {
+                outputStream.writeBatch(batch.size());
+            }
+            for (final Outgoing outgoing : batch) {
+                sendFile(outgoing);
+            }
+            final long flushStarted = TransferRecorder.start();
+            outputStream.flush();
+            TransferRecorder.record(EventType.SOCKET_WRITE, flushStarted, 0);
+        }
+        if (carried != null) {
+            carried.raf.close();
+        }
+    }
 
-                        outputStream.write(buffer);
-                        outputStream.flush();
-                        log.trace("sent chunk of {}. Left {} MB", file.getName(), (file.length() - totallyRead) / (1024 * 1024));
-                    }
-                    log.info("{} sent", file.getName());
-                } catch (EOFException e) {
-                    log.warn("EOFException");
-                } catch (IOException e) {
-                    if ("Connection reset by peer".equals(e.getMessage())
-                            || "Connection reset by peer: socket write error".equals(e.getMessage())) {
-                        log.error("Connection reset by peer in FileSenderJob.sendFile");
-                        synchronized (fileSender) {
-                            if (fileSender.isRunning()) {
-                                log.info("reconnect");
-                                // fileSender.copyingState = CopyingState.INTERRUPTED;
-                                fileSender.setIsRunning(false);
-                                fileSender.reconnect();
-                            }
-                        }
-                        break;
-                    }
-                } finally {
-                    if (raf != null) {
-                        try {
-                            raf.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
+    // skips files which disappeared since crawling, keeps polling until the queue is empty
+    private Outgoing open(Pair<String, Long> pathBytes) {
+        while (pathBytes != null) {
+            try {
+                return new Outgoing(pathBytes, new RandomAccessFile(pathBytes.getKey(), "r"));
+            } catch (FileNotFoundException e) {
+                log.warn("{} is not readable anymore, skipping", pathBytes.getKey());
+                pathBytes = pathsBytes.poll();
+            }
+        }
+        return null;
+    }
+
+    private void sendFile(final Outgoing outgoing) throws IOException {
+        final long started = TransferRecorder.start();
+        final long fileId = nextFileId++;
+        final String path = outgoing.pathBytes.getKey();
+        window.sent(fileId, outgoing.pathBytes);
+
+        try (RandomAccessFile raf = outgoing.raf) {
+            final long fileLength = raf.length();
+            long totallyRead = outgoing.offset();
+            outputStream.writeFileBegin(fileId, totallyRead, fileLength, relativePath(path, props.getSourceDir()));
+
+            final CRC32 crc = new CRC32();
+            final boolean sparse = session.has(Handshake.CAP_SPARSE);
+            long hole = 0, holes = 0;
+            raf.seek(totallyRead);
+            while (totallyRead != fileLength) {
+                final long readStarted = TransferRecorder.start();
+                int read = raf.read(buffer, 0, (int) Math.min(buffer.length, fileLength - totallyRead));
+                if (read == -1) {
+                    throw new EOFException();
+                }
+                TransferRecorder.record(EventType.CHUNK_READ, readStarted, read);
+                totallyRead += read;
+
+                final long checksumStarted = System.nanoTime();
+                crc.update(buffer, 0, read);
+                checksumNanos += System.nanoTime() - checksumStarted;
+
+                // zero blocks inside the chunk become HOLE frames, the bytes around them DATA frames;
+                // zero blocks following one another, also across chunks, make one HOLE frame
+                int position = 0;
+                while (position < read) {
+                    final int zeros = sparse ? ZeroBlocks.nextZeroBlock(buffer, position, read) : read;
+                    if (zeros > position) {
+                        if (hole > 0) {
+                            outputStream.writeHole(hole);
+                            holes += hole;
+                            hole = 0;
                         }
+                        final long writeStarted = TransferRecorder.start();
+                        outputStream.writeData(buffer, position, zeros - position);
+                        TransferRecorder.record(EventType.SOCKET_WRITE, writeStarted, zeros - position);
                     }
+                    position = sparse ? ZeroBlocks.zeroBlocksEnd(buffer, zeros, read) : read;
+                    hole += position - zeros;
                 }
+                log.trace("sent chunk of {}. Left {} MB", path, (fileLength - totallyRead) / (1024 * 1024));
             }
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+            if (hole > 0) {
+                outputStream.writeHole(hole);
+                holes += hole;
+            }
+            outputStream.writeFileEnd(fileId, crc.getValue());
+            if (holes > 0) {
+                log.debug("{} has {} MB of zeros sent as holes", path, holes / (1024 * 1024));
+            }
+            TransferRecorder.record(EventType.FILE_SENT, started, fileLength);
         }
-        countDownLatch.countDown();
+        log.info("{} sent", path);
     }
 
-    private void sendPoison() {
-        try {
-            outputStream.writeLong(-1);
-            log.debug("Poison sent");
-            outputStream.close();
-        } catch (SocketException e) {
-            if ("Connection reset by peer".equals(e.getMessage())) {
-                log.error("Connection reset by peer in FileSenderJob.sendPoison");
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    // client reports the transfer as failed instead of finished
+    private void sendError() throws IOException {
+        outputStream.writeError(failure);
+        outputStream.flush();
+        log.error("Transfer on this socket failed: {}", failure);
     }
 
+    private void sendEnd() throws IOException {
+        outputStream.writeEnd();
+        outputStream.flush();
+        log.debug("End sent");
+    }
+
+    @AllArgsConstructor
+    private static class Outgoing {
+        private final Pair<String, Long> pathBytes;
+        private final RandomAccessFile raf;
+
+        // a file changed since the client saw it is sent whole
+        long offset() throws IOException {
+            return pathBytes.getValue() <= raf.length() ? pathBytes.getValue() : 0;
+        }
+
+        boolean isSmall() throws IOException {
+            return raf.length() - offset() < ApplicationProperties.INSTANCE.getChunkSize();
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package com.github.dexluthor.utils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
 
 public enum ApplicationProperties {
@@ -22,18 +25,44 @@ public enum ApplicationProperties {
         return Integer.parseInt(properties.getProperty("server.port"));
     }
 
+    public void setPort(int port) {
+        properties.setProperty("server.port", String.valueOf(port));
+    }
+
     public String getIP() {
         return properties.getProperty("server.ip");
     }
 
+    // replicas of the source tree as host:port,host:port - falls back to the single server.ip/server.port
+    public List<Pair<String, Integer>> getServerAddresses() {
+        final String addresses = properties.getProperty("server.addresses", "").trim();
+        if (addresses.isEmpty()) {
+            return Collections.singletonList(new Pair<>(getIP(), getPort()));
+        }
+        final List<Pair<String, Integer>> result = new ArrayList<>();
+        for (final String address : addresses.split(",")) {
+            final int colon = address.lastIndexOf(':');
+            result.add(new Pair<>(address.substring(0, colon).trim(), Integer.parseInt(address.substring(colon + 1).trim())));
+        }
+        return result;
+    }
+
     public String getDestinationDir() {
         return properties.getProperty("destinationDirectory");
     }
 
+    public void setDestinationDir(String destinationDir) {
+        properties.setProperty("destinationDirectory", destinationDir);
+    }
+
     public String getSourceDir() {
         return properties.getProperty("sourceDirectory");
     }
 
+    public void setSourceDir(String sourceDir) {
+        properties.setProperty("sourceDirectory", sourceDir);
+    }
+
     public int getNumberOfSockets() {
         return Integer.parseInt(properties.getProperty("numberOfSockets"));
     }
@@ -45,4 +74,36 @@ public enum ApplicationProperties {
     public int getChunkSize() {
         return Integer.parseInt(properties.getProperty("chunkSize"));
     }
+
+    public int getMaxRetransmissions() {
+        return Integer.parseInt(properties.getProperty("integrity.maxRetransmissions", "3"));
+    }
+
+    public int getAckWindow() {
+        return Integer.parseInt(properties.getProperty("protocol.ackWindow", "32"));
+    }
+
+    public int getMaxBatchFiles() {
+        return Integer.parseInt(properties.getProperty("protocol.maxBatchFiles", "16"));
+    }
+
+    public boolean isDurableAcks() {
+        return Boolean.parseBoolean(properties.getProperty("protocol.durableAcks", "false"));
+    }
+
+    public boolean isSparse() {
+        return Boolean.parseBoolean(properties.getProperty("protocol.sparse", "true"));
+    }
+
+    public boolean isProfileEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("profile.enabled", "false"));
+    }
+
+    public int getProfileCapacity() {
+        return Integer.parseInt(properties.getProperty("profile.capacity", "262144"));
+    }
+
+    public String getProfileDir() {
+        return properties.getProperty("profile.dir", "profiles");
+    }
 }
@@ -0,0 +1,48 @@
+package com.github.dexluthor.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Assigns relative paths to replicas. Every server builds the same ring from the replica count,
+// so they agree on who sends which file without talking to each other.
+public class ConsistentHashRing {
+    private static final int VIRTUAL_NODES = 128;
+
+    private final TreeMap<Integer, Integer> ring = new TreeMap<>();
+
+    public ConsistentHashRing(final int replicaCount) {
+        if (replicaCount < 1) {
+            throw new IllegalArgumentException("Replica count must be positive, got " + replicaCount);
+        }
+        for (int replica = 0; replica < replicaCount; replica++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                ring.put(hash("replica-" + replica + "#" + node), replica);
+            }
+        }
+    }
+
+    public int replicaOf(final String relativePath) {
+        final Map.Entry<Integer, Integer> entry = ring.ceilingEntry(hash(relativePath));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    public boolean isOwnedBy(final int replica, final String relativePath) {
+        return replicaOf(relativePath) == replica;
+    }
+
+    // FNV-1a with a murmur3 finalizer, stable across JVMs unlike identity hashes
+    static int hash(final String key) {
+        int h = 0x811c9dc5;
+        for (final byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.dexluthor.utils;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class FileDeleter {
+    public static void delete(File file) {
+        ForkJoinPool.commonPool().invoke(new FileDeletingTask(file, false));
+    }
+
+    // empties the directory, the directory itself stays
+    public static void deleteContent(File directory) {
+        ForkJoinPool.commonPool().invoke(new FileDeletingTask(directory, true));
+    }
+
+    static class FileDeletingTask extends RecursiveAction {
+        private final File currentFile;
+        private final boolean keep;
+
+        public FileDeletingTask(final File fileToDelete, final boolean keep) {
+            this.currentFile = fileToDelete;
+            this.keep = keep;
+        }
+
+        @SuppressWarnings("ResultOfMethodCallIgnored")
+        @Override
+        protected void compute() {
+            // a link is deleted itself, what it points to is not part of the tree
+            final File[] content = Files.isSymbolicLink(currentFile.toPath()) ? null : currentFile.listFiles();
+            if (content != null) {
+                final List<FileDeletingTask> tasks = new LinkedList<>();
+                for (final File file : content) {
+                    if (file.isDirectory() && !Files.isSymbolicLink(file.toPath())) {
+                        final FileDeletingTask task = new FileDeletingTask(file, false);
+                        task.fork();
+                        tasks.add(task);
+                    } else {
+                        file.delete();
+                    }
+                }
+                for (final FileDeletingTask task : tasks) {
+                    task.join();
+                }
+            }
+            if (!keep) {
+                currentFile.delete();
+            }
+        }
+    }
+}
@@ -2,49 +2,29 @@ package com.github.dexluthor.utils;
 
 import lombok.experimental.UtilityClass;
 
-import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
 @UtilityClass
 public class Utils {
-    public Map<String, Long> unsentIntersection(Map<String, Long> server, Map<String, Long> client) {
+    // server: absolute path -> length, client: path relative to the copied directory -> delivered bytes.
+    // Returns absolute path -> offset to send from, for every file the client does not have whole.
+    public Map<String, Long> unsentIntersection(Map<String, Long> server, Map<String, Long> client, String sourceDir) {
         final Map<String, Long> unsent = new HashMap<>();
-        final ApplicationProperties props = ApplicationProperties.INSTANCE;
-
-        //1. unsent
         for (final Map.Entry<String, Long> entry : server.entrySet()) {
-            String serverToClientPath = props.getDestinationDir().replace('/', '\\') +
-                    entry.getKey().substring(props.getSourceDir().length());
-
-            if (!client.containsKey(serverToClientPath)) {
-                unsent.put(entry.getKey(), entry.getValue());
+            final Long delivered = client.get(relativePath(entry.getKey(), sourceDir));
+            if (delivered == null || delivered > entry.getValue()) {
+                // 1. unsent, or changed since the client got it
+                unsent.put(entry.getKey(), 0L);
+            } else if (delivered < entry.getValue()) {
+                // 2. not completely delivered
+                unsent.put(entry.getKey(), delivered);
             }
         }
-
-        //2. not completely delivered
-        for (final Map.Entry<String, Long> entry : client.entrySet()) {
-            String clientToServerPath = props.getSourceDir().replace('/', '\\') +
-                    entry.getKey().substring(props.getDestinationDir().length());
-
-            if (entry.getValue() < new File(clientToServerPath).length()) {
-                unsent.put(clientToServerPath, entry.getValue());
-            }
-        }
-
         return unsent;
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    public void deleteDirOrFile(File file) {
-        if (file.isDirectory()) {
-            final File[] files = file.listFiles();
-            if (files != null) {
-                for (final File f : files) {
-                    deleteDirOrFile(f);
-                }
-            }
-        }
-        file.delete();
+    public String relativePath(String absolutePath, String root) {
+        return absolutePath.substring(root.length()).replace('\\', '/');
     }
 }
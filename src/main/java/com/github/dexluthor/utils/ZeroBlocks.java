@@ -0,0 +1,51 @@
+package com.github.dexluthor.utils;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+@UtilityClass
+public class ZeroBlocks {
+    // holes smaller than a filesystem block are not worth a frame, chunks are scanned in blocks of this size
+    public final int MIN_HOLE = 4096;
+
+    // start of the first whole MIN_HOLE block of zeros in [from, to), blocks are counted from `from`; `to` if none
+    public int nextZeroBlock(byte[] buffer, int from, int to) {
+        for (int block = from; block + MIN_HOLE <= to; block += MIN_HOLE) {
+            if (isZero(buffer, block, MIN_HOLE)) {
+                return block;
+            }
+        }
+        return to;
+    }
+
+    // end of the whole MIN_HOLE blocks of zeros which follow one another from `from`
+    public int zeroBlocksEnd(byte[] buffer, int from, int to) {
+        int block = from;
+        while (block + MIN_HOLE <= to && isZero(buffer, block, MIN_HOLE)) {
+            block += MIN_HOLE;
+        }
+        return block;
+    }
+
+    // ORs 64 bytes per branch as 8 longs, in native order the JIT turns ByteBuffer.getLong into plain loads
+    // (byte order does not matter for a zero test, big endian would only add byte swaps)
+    public boolean isZero(byte[] buffer, int offset, int length) {
+        final ByteBuffer words = ByteBuffer.wrap(buffer).order(ByteOrder.nativeOrder());
+        final int end = offset + length;
+        int i = offset;
+        for (; i + 64 <= end; i += 64) {
+            if ((words.getLong(i) | words.getLong(i + 8) | words.getLong(i + 16) | words.getLong(i + 24)
+                    | words.getLong(i + 32) | words.getLong(i + 40) | words.getLong(i + 48) | words.getLong(i + 56)) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (buffer[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
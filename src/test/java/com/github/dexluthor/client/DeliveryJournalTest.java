@@ -0,0 +1,108 @@
+package com.github.dexluthor.client;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class DeliveryJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File destination;
+    private File journalFile;
+
+    @Before
+    public void setUp() throws IOException {
+        destination = folder.newFolder("dst");
+        journalFile = new File(folder.getRoot(), "dst.journal");
+    }
+
+    private void file(final String path, final int length) throws IOException {
+        final File file = new File(destination, path);
+        file.getParentFile().mkdirs();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private Map<String, Long> read() throws IOException {
+        return DeliveryJournal.read(journalFile, destination);
+    }
+
+    @Test
+    public void deliveredFileResumesFromJournaledLength() throws IOException {
+        try (DeliveryJournal journal = new DeliveryJournal(journalFile)) {
+            journal.begun("/a", 0);
+            journal.delivered("/a", 100);
+        }
+        // bytes appended after the acknowledgement were never verified
+        file("/a", 150);
+
+        assertEquals(Long.valueOf(100), read().get("/a"));
+    }
+
+    @Test
+    public void begunOnlyFileIsNotVerified() throws IOException {
+        try (DeliveryJournal journal = new DeliveryJournal(journalFile)) {
+            journal.begun("/dir/b", 0);
+        }
+        file("/dir/b", 4096);
+
+        assertEquals(Long.valueOf(0), read().get("/dir/b"));
+    }
+
+    @Test
+    public void resumedFileKeepsOnlyPrefixBeforeItsOffset() throws IOException {
+        try (DeliveryJournal journal = new DeliveryJournal(journalFile)) {
+            journal.begun("/a", 0);
+            journal.delivered("/a", 100);
+            // server file grew, the rest is being sent
+            journal.begun("/a", 100);
+            journal.begun("/b", 0);
+            journal.delivered("/b", 100);
+            // server file changed, it is being sent from the start
+            journal.begun("/b", 0);
+        }
+        file("/a", 180);
+        file("/b", 60);
+
+        assertEquals(Long.valueOf(100), read().get("/a"));
+        assertEquals(Long.valueOf(0), read().get("/b"));
+    }
+
+    @Test
+    public void shorterAndMissingFiles() throws IOException {
+        try (DeliveryJournal journal = new DeliveryJournal(journalFile)) {
+            journal.delivered("/cut", 100);
+            journal.delivered("/deleted", 100);
+        }
+        file("/cut", 40);
+
+        final Map<String, Long> delivered = read();
+        assertEquals(Long.valueOf(40), delivered.get("/cut"));
+        assertFalse(delivered.containsKey("/deleted"));
+    }
+
+    @Test
+    public void tornRecordIsIgnored() throws IOException {
+        try (DeliveryJournal journal = new DeliveryJournal(journalFile)) {
+            journal.delivered("/a", 100);
+            journal.delivered("/b", 100);
+        }
+        file("/a", 100);
+        file("/b", 100);
+        try (RandomAccessFile raf = new RandomAccessFile(journalFile, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        final Map<String, Long> delivered = read();
+        assertEquals(Long.valueOf(100), delivered.get("/a"));
+        assertFalse(delivered.containsKey("/b"));
+    }
+}
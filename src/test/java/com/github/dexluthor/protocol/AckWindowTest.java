@@ -0,0 +1,153 @@
+package com.github.dexluthor.protocol;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class AckWindowTest {
+    private final AckWindow<String> window = new AckWindow<>(4);
+    // plays the queue of files to send
+    private final BlockingQueue<String> resent = new LinkedBlockingQueue<>();
+    private long nextId;
+
+    // blocks, and times the test out, if the window has no room for the files
+    private void send(final String... files) throws Exception {
+        window.acquire(files.length);
+        for (final String file : files) {
+            window.sent(nextId++, file);
+        }
+    }
+
+    private void ok(final long fileId) {
+        window.onAck(new FrameReader.Ack(fileId, AckStatus.OK), resent::add);
+    }
+
+    private void corrupt(final long fileId) {
+        window.onAck(new FrameReader.Ack(fileId, AckStatus.CORRUPT), resent::add);
+    }
+
+    @Test(timeout = 5000)
+    public void okAcknowledgesEveryEarlierFile() throws Exception {
+        send("a", "b", "c", "d");
+
+        ok(2);
+        assertEquals(1, window.unacknowledged());
+        // three permits came back, the window is not full anymore
+        send("e", "f", "g");
+        assertEquals(4, window.unacknowledged());
+
+        ok(6);
+        window.awaitAll();
+        assertEquals(0, window.unacknowledged());
+        assertTrue(resent.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void okOfAlreadyAcknowledgedFileChangesNothing() throws Exception {
+        send("a", "b");
+        ok(1);
+
+        ok(0);
+        send("c", "d", "e", "f");
+        assertEquals(4, window.unacknowledged());
+    }
+
+    @Test(timeout = 5000)
+    public void corruptInsideBatch() throws Exception {
+        // batch of 0, 1, 2 - receiver reports 1 at once and acknowledges the batch with its last file
+        send("a", "b", "c");
+
+        corrupt(1);
+        assertEquals(Collections.singletonList("b"), Arrays.asList(resent.toArray()));
+        assertEquals(2, window.unacknowledged());
+        ok(2);
+        assertEquals(0, window.unacknowledged());
+        window.awaitAll();
+    }
+
+    @Test(timeout = 5000)
+    public void corruptLastOfBatchFollowedByOkOfPreviousFile() throws Exception {
+        send("a", "b", "c");
+
+        corrupt(2);
+        ok(1);
+        assertEquals(0, window.unacknowledged());
+        window.awaitAll();
+
+        // the corrupted file goes out again under a new id
+        send(resent.poll());
+        ok(3);
+        window.awaitAll();
+        assertTrue(resent.isEmpty());
+    }
+
+    @Test(timeout = 5000)
+    public void repeatedCorruptIsIgnored() throws Exception {
+        send("a", "b");
+
+        corrupt(1);
+        corrupt(1);
+        assertEquals(1, resent.size());
+        // only one permit came back for b
+        send("c", "d", "e");
+        assertEquals(4, window.unacknowledged());
+    }
+
+    @Test(timeout = 5000)
+    public void awaitAllReturnsOnlyAfterCorruptedFileIsQueued() throws Exception {
+        send("a");
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CountDownLatch resending = new CountDownLatch(1);
+            final CountDownLatch queue = new CountDownLatch(1);
+            final Future<?> acknowledging = executor.submit(() -> window.onAck(new FrameReader.Ack(0, AckStatus.CORRUPT), file -> {
+                resending.countDown();
+                try {
+                    queue.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                resent.add(file);
+            }));
+            resending.await();
+            final Future<?> sender = executor.submit(() -> {
+                window.awaitAll();
+                return null;
+            });
+
+            // the file is out of the window but not queued yet, the sender must not conclude it is done
+            try {
+                sender.get(200, TimeUnit.MILLISECONDS);
+                fail("awaitAll() returned before the corrupted file was queued again");
+            } catch (TimeoutException expected) {
+            }
+            queue.countDown();
+            sender.get();
+            acknowledging.get();
+            assertEquals("a", resent.poll());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void closedWindowFailsTheSender() throws Exception {
+        send("a", "b");
+        window.close();
+
+        final ProtocolException e = assertThrows(ProtocolException.class, window::awaitAll);
+        assertTrue(e.getMessage().startsWith("2 "));
+        assertThrows(ProtocolException.class, () -> window.acquire(1));
+    }
+}
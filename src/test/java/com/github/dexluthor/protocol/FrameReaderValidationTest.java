@@ -0,0 +1,208 @@
+package com.github.dexluthor.protocol;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+// Frames FrameWriter never produces, written byte by byte
+public class FrameReaderValidationTest {
+    private static final int MAX_TEXT_LENGTH = 64 * 1024;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    private FrameReader reader() {
+        return new FrameReader(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    private void header(final FrameType type, final int payloadLength) throws IOException {
+        out.writeByte(type.getCode());
+        out.writeInt(payloadLength);
+    }
+
+    // header is fine, the payload is rejected
+    private void assertPayloadRejected(final FrameType type, final ReadPayload read) throws IOException {
+        final FrameReader reader = reader();
+        assertEquals(type, reader.next());
+        assertThrows(ProtocolException.class, () -> read.from(reader));
+    }
+
+    private interface ReadPayload {
+        void from(FrameReader reader) throws IOException;
+    }
+
+    @Test
+    public void unknownType() throws IOException {
+        out.writeByte(99);
+        out.writeInt(0);
+
+        final ProtocolException e = assertThrows(ProtocolException.class, () -> reader().next());
+        assertTrue(e.getMessage().contains("99"));
+    }
+
+    @Test
+    public void negativeLength() throws IOException {
+        header(FrameType.DATA, -1);
+
+        assertThrows(ProtocolException.class, () -> reader().next());
+    }
+
+    @Test
+    public void ackOfWrongLength() throws IOException {
+        header(FrameType.ACK, Long.BYTES);
+        out.writeLong(1);
+
+        assertPayloadRejected(FrameType.ACK, FrameReader::readAck);
+    }
+
+    @Test
+    public void fileEndOfWrongLength() throws IOException {
+        header(FrameType.FILE_END, Long.BYTES);
+        out.writeLong(1);
+
+        assertPayloadRejected(FrameType.FILE_END, FrameReader::readFileEnd);
+    }
+
+    @Test
+    public void holeOfWrongLength() throws IOException {
+        header(FrameType.HOLE, Integer.BYTES);
+        out.writeInt(4096);
+
+        assertPayloadRejected(FrameType.HOLE, FrameReader::readHole);
+    }
+
+    @Test
+    public void endWithPayload() throws IOException {
+        header(FrameType.END, 1);
+        out.writeByte(0);
+
+        assertPayloadRejected(FrameType.END, FrameReader::readEnd);
+    }
+
+    @Test
+    public void batchOfWrongLength() throws IOException {
+        header(FrameType.BATCH, Long.BYTES);
+        out.writeLong(2);
+
+        assertPayloadRejected(FrameType.BATCH, FrameReader::readBatch);
+    }
+
+    @Test
+    public void emptyHole() throws IOException {
+        header(FrameType.HOLE, Long.BYTES);
+        out.writeLong(0);
+
+        assertPayloadRejected(FrameType.HOLE, FrameReader::readHole);
+    }
+
+    @Test
+    public void emptyBatch() throws IOException {
+        header(FrameType.BATCH, Integer.BYTES);
+        out.writeInt(0);
+
+        assertPayloadRejected(FrameType.BATCH, FrameReader::readBatch);
+    }
+
+    @Test
+    public void fileBeginWithOffsetBeyondLength() throws IOException {
+        fileBegin(0, 11, 10, "/a");
+
+        assertPayloadRejected(FrameType.FILE_BEGIN, FrameReader::readFileBegin);
+    }
+
+    @Test
+    public void fileBeginWithNegativeOffset() throws IOException {
+        fileBegin(0, -1, 10, "/a");
+
+        assertPayloadRejected(FrameType.FILE_BEGIN, FrameReader::readFileBegin);
+    }
+
+    @Test
+    public void fileBeginWithEmptyPath() throws IOException {
+        fileBegin(0, 0, 10, "");
+
+        assertPayloadRejected(FrameType.FILE_BEGIN, FrameReader::readFileBegin);
+    }
+
+    @Test
+    public void fileBeginShorterThanItsNumbers() throws IOException {
+        header(FrameType.FILE_BEGIN, 2 * Long.BYTES);
+        out.writeLong(0);
+        out.writeLong(0);
+
+        assertPayloadRejected(FrameType.FILE_BEGIN, FrameReader::readFileBegin);
+    }
+
+    @Test
+    public void fileBeginWithOversizedPath() throws IOException {
+        header(FrameType.FILE_BEGIN, 3 * Long.BYTES + MAX_TEXT_LENGTH + 1);
+
+        assertPayloadRejected(FrameType.FILE_BEGIN, FrameReader::readFileBegin);
+    }
+
+    @Test
+    public void dataLargerThanChunk() throws IOException {
+        header(FrameType.DATA, 10);
+        out.write(new byte[10]);
+
+        assertPayloadRejected(FrameType.DATA, reader -> reader.readData(new byte[4]));
+    }
+
+    @Test
+    public void oversizedError() throws IOException {
+        header(FrameType.ERROR, MAX_TEXT_LENGTH + 1);
+
+        assertPayloadRejected(FrameType.ERROR, FrameReader::readError);
+    }
+
+    @Test
+    public void unknownAckStatus() throws IOException {
+        header(FrameType.ACK, Long.BYTES + 1);
+        out.writeLong(0);
+        out.writeByte(AckStatus.values().length);
+
+        assertPayloadRejected(FrameType.ACK, FrameReader::readAck);
+    }
+
+    @Test
+    public void payloadOfAnotherType() throws IOException {
+        header(FrameType.END, 0);
+
+        final FrameReader reader = reader();
+        reader.next();
+        final ProtocolException e = assertThrows(ProtocolException.class, reader::readAck);
+        assertTrue(e.getMessage().contains("END"));
+    }
+
+    @Test
+    public void payloadReadTwice() throws IOException {
+        header(FrameType.END, 0);
+
+        final FrameReader reader = reader();
+        reader.next();
+        reader.readEnd();
+        assertThrows(ProtocolException.class, reader::readEnd);
+    }
+
+    @Test
+    public void truncatedPayload() throws IOException {
+        header(FrameType.FILE_END, 2 * Long.BYTES);
+        out.writeLong(0);
+
+        final FrameReader reader = reader();
+        reader.next();
+        assertThrows(EOFException.class, reader::readFileEnd);
+    }
+
+    private void fileBegin(final long fileId, final long offset, final long length, final String path) throws IOException {
+        final byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        header(FrameType.FILE_BEGIN, 3 * Long.BYTES + pathBytes.length);
+        out.writeLong(fileId);
+        out.writeLong(offset);
+        out.writeLong(length);
+        out.write(pathBytes);
+    }
+}
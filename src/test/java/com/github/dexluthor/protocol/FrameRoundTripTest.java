@@ -0,0 +1,161 @@
+package com.github.dexluthor.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class FrameRoundTripTest {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final FrameWriter writer = new FrameWriter(bytes);
+
+    private FrameReader reader() throws IOException {
+        writer.flush();
+        return new FrameReader(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    public void fileBegin() throws IOException {
+        writer.writeFileBegin(7, 1024, 4096, "/dir/s\u00fabor.bin");
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.FILE_BEGIN, reader.next());
+        final FrameReader.FileBegin begin = reader.readFileBegin();
+        assertEquals(7, begin.getFileId());
+        assertEquals(1024, begin.getOffset());
+        assertEquals(4096, begin.getLength());
+        assertEquals("/dir/s\u00fabor.bin", begin.getPath());
+    }
+
+    @Test
+    public void fileBeginOfEmptyFile() throws IOException {
+        writer.writeFileBegin(0, 0, 0, "/empty");
+        final FrameReader reader = reader();
+
+        reader.next();
+        final FrameReader.FileBegin begin = reader.readFileBegin();
+        assertEquals(0, begin.getOffset());
+        assertEquals(0, begin.getLength());
+    }
+
+    @Test
+    public void data() throws IOException {
+        final byte[] chunk = {1, 2, 3, 4, 5, 6, 7, 8};
+        writer.writeData(chunk, 2, 5);
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.DATA, reader.next());
+        final byte[] buffer = new byte[16];
+        assertEquals(5, reader.readData(buffer));
+        assertArrayEquals(new byte[]{3, 4, 5, 6, 7}, Arrays.copyOf(buffer, 5));
+    }
+
+    @Test
+    public void emptyData() throws IOException {
+        writer.writeData(new byte[0], 0, 0);
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.DATA, reader.next());
+        assertEquals(0, reader.readData(new byte[4]));
+    }
+
+    @Test
+    public void hole() throws IOException {
+        writer.writeHole(5L * 1024 * 1024 * 1024);
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.HOLE, reader.next());
+        assertEquals(5L * 1024 * 1024 * 1024, reader.readHole());
+    }
+
+    @Test
+    public void fileEnd() throws IOException {
+        writer.writeFileEnd(9, 0xFFFFFFFFL);
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.FILE_END, reader.next());
+        final FrameReader.FileEnd end = reader.readFileEnd();
+        assertEquals(9, end.getFileId());
+        assertEquals(0xFFFFFFFFL, end.getChecksum());
+    }
+
+    @Test
+    public void batch() throws IOException {
+        writer.writeBatch(16);
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.BATCH, reader.next());
+        assertEquals(16, reader.readBatch());
+    }
+
+    @Test
+    public void ack() throws IOException {
+        writer.writeAck(3, AckStatus.OK);
+        writer.writeAck(4, AckStatus.CORRUPT);
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.ACK, reader.next());
+        final FrameReader.Ack ok = reader.readAck();
+        assertEquals(3, ok.getFileId());
+        assertEquals(AckStatus.OK, ok.getStatus());
+        assertEquals(FrameType.ACK, reader.next());
+        final FrameReader.Ack corrupt = reader.readAck();
+        assertEquals(4, corrupt.getFileId());
+        assertEquals(AckStatus.CORRUPT, corrupt.getStatus());
+    }
+
+    @Test
+    public void error() throws IOException {
+        writer.writeError("disk full");
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.ERROR, reader.next());
+        assertEquals("disk full", reader.readError());
+    }
+
+    @Test
+    public void end() throws IOException {
+        writer.writeEnd();
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.END, reader.next());
+        reader.readEnd();
+    }
+
+    @Test
+    public void wholeFileInOneStream() throws IOException {
+        final byte[] chunk = {42, 43};
+        writer.writeBatch(2);
+        writer.writeFileBegin(0, 0, 2, "/a");
+        writer.writeData(chunk, 0, 2);
+        writer.writeFileEnd(0, 1);
+        writer.writeFileBegin(1, 0, 8192, "/b");
+        writer.writeHole(8192);
+        writer.writeFileEnd(1, 2);
+        writer.writeEnd();
+        final FrameReader reader = reader();
+
+        assertEquals(FrameType.BATCH, reader.next());
+        assertEquals(2, reader.readBatch());
+        assertEquals(FrameType.FILE_BEGIN, reader.next());
+        assertEquals("/a", reader.readFileBegin().getPath());
+        assertEquals(FrameType.DATA, reader.next());
+        assertEquals(2, reader.readData(new byte[2]));
+        assertEquals(FrameType.FILE_END, reader.next());
+        assertEquals(0, reader.readFileEnd().getFileId());
+        assertEquals(FrameType.FILE_BEGIN, reader.next());
+        assertEquals("/b", reader.readFileBegin().getPath());
+        assertEquals(FrameType.HOLE, reader.next());
+        assertEquals(8192, reader.readHole());
+        assertEquals(FrameType.FILE_END, reader.next());
+        assertEquals(1, reader.readFileEnd().getFileId());
+        assertEquals(FrameType.END, reader.next());
+        reader.readEnd();
+        assertThrows(EOFException.class, reader::next);
+    }
+}
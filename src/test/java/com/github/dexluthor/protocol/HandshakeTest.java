@@ -0,0 +1,110 @@
+package com.github.dexluthor.protocol;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class HandshakeTest {
+    private final ByteArrayOutputStream reply = new ByteArrayOutputStream();
+
+    private Handshake.Session accept(final byte[] offer, final int serverWindow) throws IOException {
+        return Handshake.accept(new DataInputStream(new ByteArrayInputStream(offer)), new DataOutputStream(reply), serverWindow);
+    }
+
+    private Handshake.Session await() throws IOException {
+        return Handshake.await(new DataInputStream(new ByteArrayInputStream(reply.toByteArray())));
+    }
+
+    private static byte[] offer(final int capabilities, final int window) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Handshake.offer(new DataOutputStream(bytes), capabilities, window);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] raw(final int magic, final int version, final int capabilities, final int window) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(magic);
+        out.writeInt(version);
+        out.writeInt(capabilities);
+        out.writeInt(window);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void bothSidesAgree() throws IOException {
+        final Handshake.Session server = accept(offer(Handshake.CAP_BATCH | Handshake.CAP_SPARSE, 16), 32);
+        final Handshake.Session client = await();
+
+        assertEquals(Handshake.VERSION, server.getVersion());
+        assertEquals(server.getVersion(), client.getVersion());
+        assertEquals(server.getCapabilities(), client.getCapabilities());
+        assertEquals(server.getAckWindow(), client.getAckWindow());
+    }
+
+    @Test
+    public void capabilitiesAreIntersected() throws IOException {
+        final int unknown = 1 << 20;
+        final Handshake.Session session = accept(offer(Handshake.CAP_BATCH | Handshake.CAP_SPARSE | unknown, 16), 32);
+
+        assertTrue(session.has(Handshake.CAP_BATCH));
+        assertTrue(session.has(Handshake.CAP_SPARSE));
+        assertFalse(session.has(Handshake.CAP_DURABLE_ACKS));
+        assertFalse(session.has(unknown));
+        assertEquals(session.getCapabilities(), await().getCapabilities());
+    }
+
+    @Test
+    public void noCapabilities() throws IOException {
+        final Handshake.Session session = accept(offer(0, 16), 32);
+
+        assertEquals(0, session.getCapabilities());
+        assertFalse(await().has(Handshake.CAP_BATCH));
+    }
+
+    @Test
+    public void windowIsClampedToServer() throws IOException {
+        assertEquals(32, accept(offer(0, 1000), 32).getAckWindow());
+        assertEquals(32, await().getAckWindow());
+    }
+
+    @Test
+    public void windowIsClampedToClient() throws IOException {
+        assertEquals(4, accept(offer(0, 4), 32).getAckWindow());
+        assertEquals(4, await().getAckWindow());
+    }
+
+    @Test
+    public void newerClientGetsServerVersion() throws IOException {
+        assertEquals(Handshake.VERSION, accept(raw(Handshake.MAGIC, Handshake.VERSION + 1, 0, 8), 32).getVersion());
+        assertEquals(Handshake.VERSION, await().getVersion());
+    }
+
+    @Test
+    public void badMagicIsRejected() throws IOException {
+        assertThrows(ProtocolException.class, () -> accept(raw(0x12345678, Handshake.VERSION, 0, 8), 32));
+        // not a client of this protocol, it gets no answer
+        assertEquals(0, reply.size());
+    }
+
+    @Test
+    public void oldVersionIsRejected() throws IOException {
+        assertThrows(ProtocolException.class, () -> accept(raw(Handshake.MAGIC, Handshake.MIN_VERSION - 1, 0, 8), 32));
+        assertThrows(ProtocolException.class, this::await);
+    }
+
+    @Test
+    public void emptyWindowIsRejected() throws IOException {
+        assertThrows(ProtocolException.class, () -> accept(offer(Handshake.CAP_BATCH, 0), 32));
+        assertThrows(ProtocolException.class, this::await);
+    }
+
+    @Test
+    public void truncatedOfferFails() throws IOException {
+        final byte[] offer = Arrays.copyOf(offer(Handshake.CAP_BATCH, 8), 6);
+        assertThrows(EOFException.class, () -> accept(offer, 32));
+    }
+}
@@ -0,0 +1,243 @@
+package com.github.dexluthor.protocol;
+
+import com.github.dexluthor.client.DeliveryJournal;
+import com.github.dexluthor.client.FileReceiver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+// FileReceiver on one end of a loopback socket, the test plays the server on the other
+public class ReceiverConformanceTest {
+    private static final Handshake.Session SESSION = new Handshake.Session(Handshake.VERSION, Handshake.CAP_BATCH | Handshake.CAP_SPARSE, 8);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private Socket serverSide;
+    private DeliveryJournal journal;
+    private File destination;
+    private Future<Void> receiving;
+    private FrameWriter out;
+    private FrameReader in;
+
+    @Before
+    public void connect() throws IOException {
+        destination = folder.newFolder("dst");
+        journal = new DeliveryJournal(new File(folder.getRoot(), "dst.journal"));
+        try (ServerSocket listening = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            final Socket clientSide = new Socket(InetAddress.getLoopbackAddress(), listening.getLocalPort());
+            serverSide = listening.accept();
+            receiving = executor.submit(() -> {
+                try (Socket socket = clientSide) {
+                    new FileReceiver(socket, SESSION, destination, journal, bytes -> {
+                    }, () -> {
+                    }).receive();
+                }
+                return null;
+            });
+        }
+        out = new FrameWriter(new BufferedOutputStream(serverSide.getOutputStream()));
+        in = new FrameReader(serverSide.getInputStream());
+    }
+
+    @After
+    public void close() throws IOException {
+        serverSide.close();
+        executor.shutdownNow();
+        journal.close();
+    }
+
+    private void sendFile(final long fileId, final String path, final byte[] content, final boolean corrupt) throws IOException {
+        final CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        out.writeFileBegin(fileId, 0, content.length, path);
+        out.writeData(content, 0, content.length);
+        out.writeFileEnd(fileId, corrupt ? crc.getValue() ^ 1 : crc.getValue());
+    }
+
+    private void assertAck(final long fileId, final AckStatus status) throws IOException {
+        assertEquals(FrameType.ACK, in.next());
+        final FrameReader.Ack ack = in.readAck();
+        assertEquals(fileId, ack.getFileId());
+        assertEquals(status, ack.getStatus());
+    }
+
+    // END makes the receiver close its side, so no further acknowledgement may follow
+    private void finish() throws Exception {
+        out.writeEnd();
+        out.flush();
+        receiving.get(5, TimeUnit.SECONDS);
+        assertThrows(EOFException.class, in::next);
+    }
+
+    private byte[] saved(final String path) throws IOException {
+        return Files.readAllBytes(new File(destination, path).toPath());
+    }
+
+    private static byte[] content(final String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test(timeout = 10_000)
+    public void everyFileOutsideBatchIsAcknowledged() throws Exception {
+        sendFile(0, "/a", content("alpha"), false);
+        sendFile(1, "/dir/b", content("beta"), false);
+        out.flush();
+
+        assertAck(0, AckStatus.OK);
+        assertAck(1, AckStatus.OK);
+        finish();
+        assertArrayEquals(content("alpha"), saved("/a"));
+        assertArrayEquals(content("beta"), saved("/dir/b"));
+    }
+
+    @Test(timeout = 10_000)
+    public void batchIsAcknowledgedOnceByItsLastFile() throws Exception {
+        out.writeBatch(3);
+        sendFile(0, "/a", content("a"), false);
+        sendFile(1, "/b", content("b"), false);
+        sendFile(2, "/c", content("c"), false);
+        out.flush();
+
+        assertAck(2, AckStatus.OK);
+        finish();
+    }
+
+    @Test(timeout = 10_000)
+    public void corruptInsideBatch() throws Exception {
+        final AckWindow<String> window = sentBatchOfThree();
+        out.writeBatch(3);
+        sendFile(0, "/a", content("a"), false);
+        sendFile(1, "/b", content("b"), true);
+        sendFile(2, "/c", content("c"), false);
+        out.flush();
+
+        assertAck(1, AckStatus.CORRUPT);
+        assertAck(2, AckStatus.OK);
+        assertEquals(0, saved("/b").length);
+
+        final List<String> resent = new ArrayList<>();
+        window.onAck(new FrameReader.Ack(1, AckStatus.CORRUPT), resent::add);
+        window.onAck(new FrameReader.Ack(2, AckStatus.OK), resent::add);
+        assertEquals(Collections.singletonList("/b"), resent);
+        assertEquals(0, window.unacknowledged());
+
+        // retransmission under a new id completes the file
+        sendFile(3, "/b", content("b"), false);
+        out.flush();
+        assertAck(3, AckStatus.OK);
+        finish();
+        assertArrayEquals(content("b"), saved("/b"));
+    }
+
+    @Test(timeout = 10_000)
+    public void corruptLastOfBatchIsFollowedByOkOfPreviousFile() throws Exception {
+        final AckWindow<String> window = sentBatchOfThree();
+        out.writeBatch(3);
+        sendFile(0, "/a", content("a"), false);
+        sendFile(1, "/b", content("b"), false);
+        sendFile(2, "/c", content("c"), true);
+        out.flush();
+
+        assertAck(2, AckStatus.CORRUPT);
+        assertAck(1, AckStatus.OK);
+
+        final List<String> resent = new ArrayList<>();
+        window.onAck(new FrameReader.Ack(2, AckStatus.CORRUPT), resent::add);
+        window.onAck(new FrameReader.Ack(1, AckStatus.OK), resent::add);
+        assertEquals(Collections.singletonList("/c"), resent);
+        assertEquals(0, window.unacknowledged());
+        finish();
+    }
+
+    @Test(timeout = 10_000)
+    public void holeIsSkippedAndVerified() throws Exception {
+        final byte[] tail = content("tail");
+        final byte[] whole = Arrays.copyOf(new byte[8192], 8192 + tail.length);
+        System.arraycopy(tail, 0, whole, 8192, tail.length);
+        final CRC32 crc = new CRC32();
+        crc.update(whole, 0, whole.length);
+
+        out.writeFileBegin(0, 0, whole.length, "/sparse");
+        out.writeHole(8192);
+        out.writeData(tail, 0, tail.length);
+        out.writeFileEnd(0, crc.getValue());
+        // hole at the end still gives the file its full length
+        out.writeFileBegin(1, 0, 4096, "/zeros");
+        out.writeHole(4096);
+        out.writeFileEnd(1, zerosChecksum(4096));
+        out.flush();
+
+        assertAck(0, AckStatus.OK);
+        assertAck(1, AckStatus.OK);
+        finish();
+        assertArrayEquals(whole, saved("/sparse"));
+        assertArrayEquals(new byte[4096], saved("/zeros"));
+    }
+
+    @Test(timeout = 10_000)
+    public void unexpectedFrameIsAnsweredWithError() throws Exception {
+        out.writeAck(0, AckStatus.OK);
+        out.flush();
+
+        assertEquals(FrameType.ERROR, in.next());
+        assertTrue(in.readError().contains("ACK"));
+    }
+
+    @Test(timeout = 10_000)
+    public void pathOutsideOfDestinationIsRefused() throws Exception {
+        sendFile(0, "/../escaped", content("x"), false);
+        out.flush();
+
+        assertEquals(FrameType.ERROR, in.next());
+        assertTrue(in.readError().contains("/../escaped"));
+        assertFalse(new File(folder.getRoot(), "escaped").exists());
+    }
+
+    @Test(timeout = 10_000)
+    public void pathBackIntoDestinationIsSaved() throws Exception {
+        sendFile(0, "/dir/../a", content("a"), false);
+        out.flush();
+
+        assertAck(0, AckStatus.OK);
+        finish();
+        assertArrayEquals(content("a"), saved("/a"));
+    }
+
+    private static long zerosChecksum(final int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(new byte[length], 0, length);
+        return crc.getValue();
+    }
+
+    // sender side of the same batch, files are named by their paths
+    private static AckWindow<String> sentBatchOfThree() throws Exception {
+        final AckWindow<String> window = new AckWindow<>(4);
+        window.acquire(3);
+        window.sent(0, "/a");
+        window.sent(1, "/b");
+        window.sent(2, "/c");
+        return window;
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.dexluthor.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConsistentHashRingTest {
+    private static final String[] PATHS = {"/a", "/dir/file.bin", "/photos/2020/img_0001.jpg", "/x/y/z.txt", "/empty"};
+
+    private static String path(final int i) {
+        return "/dir" + (i % 97) + "/file-" + i + ".bin";
+    }
+
+    // servers on other JVMs compute the same values, changing them splits a running transfer wrongly
+    @Test
+    public void hashIsFixed() {
+        assertEquals(0xAB3E7C0B, ConsistentHashRing.hash(""));
+        assertEquals(0x1A80B1B3, ConsistentHashRing.hash("a"));
+        assertEquals(0xE6F5AD6F, ConsistentHashRing.hash("/dir/file.bin"));
+        assertEquals(0x758D6777, ConsistentHashRing.hash("replica-0#0"));
+        // UTF-8 bytes, not chars
+        assertEquals(0xCCD97B64, ConsistentHashRing.hash("/s\u00fabor"));
+    }
+
+    @Test
+    public void assignmentIsFixed() {
+        final int[][] owners = {
+                {0, 0, 0, 0, 0},
+                {1, 0, 0, 0, 1},
+                {1, 0, 2, 0, 2},
+                {1, 0, 2, 3, 2},
+        };
+        for (int replicas = 1; replicas <= 4; replicas++) {
+            final ConsistentHashRing ring = new ConsistentHashRing(replicas);
+            for (int i = 0; i < PATHS.length; i++) {
+                assertEquals(replicas + " replicas, " + PATHS[i], owners[replicas - 1][i], ring.replicaOf(PATHS[i]));
+            }
+        }
+    }
+
+    @Test
+    public void everyPathHasExactlyOneOwner() {
+        for (int replicas = 1; replicas <= 4; replicas++) {
+            // every server builds its own ring
+            final ConsistentHashRing[] servers = new ConsistentHashRing[replicas];
+            for (int server = 0; server < replicas; server++) {
+                servers[server] = new ConsistentHashRing(replicas);
+            }
+            final int[] owned = new int[replicas];
+            for (int i = 0; i < 10_000; i++) {
+                int owners = 0;
+                for (int server = 0; server < replicas; server++) {
+                    if (servers[server].isOwnedBy(server, path(i))) {
+                        owners++;
+                        owned[server]++;
+                    }
+                }
+                assertEquals(replicas + " replicas, " + path(i), 1, owners);
+            }
+            for (int server = 0; server < replicas; server++) {
+                // nobody is left idle, 128 virtual nodes keep the shares within a few tens of percent
+                assertTrue(replicas + " replicas, replica " + server + " owns " + owned[server],
+                        owned[server] > 10_000 / replicas / 2);
+            }
+        }
+    }
+
+    @Test
+    public void addedReplicaOnlyTakesFiles() {
+        for (int replicas = 1; replicas < 4; replicas++) {
+            final ConsistentHashRing before = new ConsistentHashRing(replicas);
+            final ConsistentHashRing after = new ConsistentHashRing(replicas + 1);
+            for (int i = 0; i < 10_000; i++) {
+                final int owner = after.replicaOf(path(i));
+                assertTrue(path(i), owner == replicas || owner == before.replicaOf(path(i)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void noReplicas() {
+        new ConsistentHashRing(0);
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.dexluthor.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+
+import static org.junit.Assert.*;
+
+public class FileDeleterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File tree;
+    private File outside;
+
+    // tree/a, tree/dir/b, tree/dir/deeper/c, tree/link -> outside, tree/dir/fileLink -> outside/kept
+    @Before
+    public void setUp() throws IOException {
+        tree = folder.newFolder("tree");
+        outside = folder.newFolder("outside");
+        new File(outside, "kept").createNewFile();
+        new File(tree, "dir/deeper").mkdirs();
+        new File(tree, "a").createNewFile();
+        new File(tree, "dir/b").createNewFile();
+        new File(tree, "dir/deeper/c").createNewFile();
+        Files.createSymbolicLink(new File(tree, "link").toPath(), outside.toPath());
+        Files.createSymbolicLink(new File(tree, "dir/fileLink").toPath(), new File(outside, "kept").toPath());
+    }
+
+    @Test
+    public void deletesTreeButNotWhatLinksPointTo() {
+        FileDeleter.delete(tree);
+
+        assertFalse(tree.exists());
+        assertTrue(new File(outside, "kept").exists());
+    }
+
+    @Test
+    public void deleteContentKeepsDirectory() {
+        FileDeleter.deleteContent(tree);
+
+        assertTrue(tree.isDirectory());
+        assertArrayEquals(new String[0], tree.list());
+        assertTrue(new File(outside, "kept").exists());
+    }
+
+    @Test
+    public void linkItselfIsDeleted() {
+        final File link = new File(tree, "link");
+
+        FileDeleter.delete(link);
+
+        assertFalse(Files.exists(link.toPath(), LinkOption.NOFOLLOW_LINKS));
+        assertTrue(new File(outside, "kept").exists());
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.dexluthor.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ZeroBlocksTest {
+    private static final int BLOCK = ZeroBlocks.MIN_HOLE;
+
+    @Test
+    public void zeroBuffer() {
+        assertTrue(ZeroBlocks.isZero(new byte[3 * BLOCK], 0, 3 * BLOCK));
+        assertTrue(ZeroBlocks.isZero(new byte[0], 0, 0));
+    }
+
+    @Test
+    public void nonZeroByteAnywhereInWordLoop() {
+        // every byte of a 64 byte group lands in a different long and at a different position in it
+        for (int i = 0; i < 128; i++) {
+            final byte[] buffer = new byte[128];
+            buffer[i] = 1;
+            assertFalse("byte " + i, ZeroBlocks.isZero(buffer, 0, 128));
+        }
+    }
+
+    @Test
+    public void nonZeroByteInTail() {
+        // 64 bytes go through the word loop, 7 through the byte loop
+        final byte[] buffer = new byte[71];
+        buffer[70] = -1;
+        assertFalse(ZeroBlocks.isZero(buffer, 0, 71));
+        assertTrue(ZeroBlocks.isZero(buffer, 0, 70));
+    }
+
+    @Test
+    public void onlyTheGivenRangeIsChecked() {
+        final byte[] buffer = new byte[300];
+        buffer[2] = 1;
+        buffer[250] = 1;
+        // unaligned offsets within the array, word loop and tail both used
+        assertTrue(ZeroBlocks.isZero(buffer, 3, 247));
+        assertTrue(ZeroBlocks.isZero(buffer, 251, 49));
+        assertFalse(ZeroBlocks.isZero(buffer, 3, 248));
+        assertFalse(ZeroBlocks.isZero(buffer, 2, 64));
+    }
+
+    @Test
+    public void zeroBlocksInsideChunk() {
+        // data, zero, zero, data, zero and a partial zero block at the end
+        final byte[] chunk = new byte[5 * BLOCK + 100];
+        chunk[10] = 1;
+        chunk[3 * BLOCK + 5] = 1;
+
+        assertEquals(BLOCK, ZeroBlocks.nextZeroBlock(chunk, 0, chunk.length));
+        assertEquals(3 * BLOCK, ZeroBlocks.zeroBlocksEnd(chunk, BLOCK, chunk.length));
+        assertEquals(4 * BLOCK, ZeroBlocks.nextZeroBlock(chunk, 3 * BLOCK, chunk.length));
+        // partial block is never a hole
+        assertEquals(5 * BLOCK, ZeroBlocks.zeroBlocksEnd(chunk, 4 * BLOCK, chunk.length));
+        assertEquals(chunk.length, ZeroBlocks.nextZeroBlock(chunk, 5 * BLOCK, chunk.length));
+    }
+
+    @Test
+    public void noZeroBlock() {
+        final byte[] chunk = new byte[2 * BLOCK];
+        chunk[100] = 1;
+        chunk[BLOCK + BLOCK - 1] = 1;
+
+        assertEquals(chunk.length, ZeroBlocks.nextZeroBlock(chunk, 0, chunk.length));
+        assertEquals(0, ZeroBlocks.zeroBlocksEnd(chunk, 0, chunk.length));
+        // range shorter than a block
+        assertEquals(BLOCK - 1, ZeroBlocks.nextZeroBlock(new byte[BLOCK], 0, BLOCK - 1));
+    }
+}